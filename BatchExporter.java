@@ -0,0 +1,250 @@
+/* *****************************************************************************
+ *  Compilation:  javac BatchExporter.java
+ *
+ *  A BatchExporter renders the frames of many MIDI files offline, for example
+ *  every .mid file of a directory. Several files are processed at once, each
+ *  on a thread of a fixed pool of jobs threads: the file is read with an
+ *  SmfReader, its notes are collected into a NoteTimeline (for the number of
+ *  notes and the peak polyphony), and its frames are rendered by a
+ *  FrameExporter into a directory of its own. All FrameExporters render on one
+ *  shared ForkJoinPool, so no more than threads frames are rendered at once
+ *  however many files are in progress. A file that fails (not a MIDI file,
+ *  cannot be written, ...) is recorded as failed, and the others continue.
+ *
+ *  When all files are done, a manifest (manifest.csv) is written with one row
+ *  per file, in the order of the files: its name, whether it succeeded, its
+ *  numbers of messages, notes, peak polyphony, and frames, its length, the
+ *  time taken to read it, build its timeline, and render it, and the error if
+ *  it failed.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class BatchExporter {
+    // constants
+    public static final String MANIFEST_FILENAME = "manifest.csv";
+    private static final String MIDI_EXTENSION = ".mid";
+
+    // instance variables
+    private final int fps;                     // frame rate (frames per second)
+    private final FrameExporter.Format format; // PNG images or raw RGB
+    private final MappingTable table;          // mappings of programvisuals and colornotes
+    private final int threads;                 // threads that render frames, for all files
+    private final int jobs;                    // files processed at once
+
+    // what happened to one file
+    private static final class Result {
+        final File file;
+        final File dir;      // directory its frames are written to
+        boolean succeeded;
+        int events;          // number of channel messages
+        int notes;           // number of notes
+        int peakPolyphony;   // most notes playing at once
+        int frames;          // number of frames written
+        double seconds;      // length of the music
+        double readMillis, timelineMillis, renderMillis;
+        String error;        // why it failed, null if it succeeded
+
+        Result(File file, File dir) {
+            this.file = file;
+            this.dir = dir;
+        }
+    }
+
+    /**
+     * Creates a BatchExporter.
+     *
+     * @param fps     frame rate (frames per second)
+     * @param format  PNG images or raw RGB
+     * @param table   mappings of programvisuals and colornotes
+     * @param threads number of threads that render frames, shared by all files
+     * @param jobs    number of files processed at once
+     */
+    public BatchExporter(int fps, FrameExporter.Format format, MappingTable table, int threads, int jobs) {
+        if (fps <= 0) throw new IllegalArgumentException("Frame rate must be positive: " + fps);
+        if (threads <= 0) throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+        if (jobs <= 0) throw new IllegalArgumentException("Number of jobs must be positive: " + jobs);
+        this.fps = fps;
+        this.format = format;
+        this.table = table;
+        this.threads = threads;
+        this.jobs = jobs;
+    }
+
+    /**
+     * Static helper method. Finds the MIDI files named by a directory (every
+     * .mid file in it), a file, or a glob pattern for file names in a directory
+     * (for example songs/*.mid). Files are sorted by name.
+     *
+     * @param spec directory, file, or glob pattern
+     * @return MIDI files found
+     * @throws IOException if the directory cannot be listed
+     */
+    public static List<File> findFiles(String spec) throws IOException {
+        File file = new File(spec);
+        if (file.isFile()) return List.of(file);
+
+        File dir;
+        PathMatcher matcher;
+        if (file.isDirectory()) {
+            dir = file;
+            matcher = path -> path.toString().toLowerCase().endsWith(MIDI_EXTENSION);
+        }
+        else {
+            // glob pattern for file names, in the directory of the pattern
+            dir = (file.getParentFile() == null) ? new File(".") : file.getParentFile();
+            matcher = FileSystems.getDefault().getPathMatcher("glob:" + file.getName());
+        }
+        File[] files = dir.listFiles();
+        if (files == null) throw new IOException("Cannot list directory: " + dir);
+        Arrays.sort(files);
+
+        List<File> found = new ArrayList<File>();
+        for (File f : files) {
+            if (f.isFile() && matcher.matches(Paths.get(f.getName()))) found.add(f);
+        }
+        return found;
+    }
+
+    /**
+     * Processes the files, several at once, writing the frames of each to its
+     * own directory in outDir (named after the file) and the manifest to outDir.
+     * Prints a line to progress as each file is done.
+     *
+     * @param files    MIDI files to process
+     * @param outDir   directory to write frames and the manifest to
+     * @param progress stream to report progress to, or null
+     * @return number of files that failed
+     * @throws IOException if outDir or the manifest cannot be written
+     */
+    public int export(List<File> files, File outDir, PrintStream progress) throws IOException {
+        outDir.mkdirs();
+        if (!outDir.isDirectory()) throw new IOException("Cannot create directory: " + outDir);
+
+        // one directory per file, named after it (numbered if names repeat)
+        Result[] results = new Result[files.size()];
+        Set<String> names = new HashSet<String>();
+        for (int i = 0; i < results.length; i++) {
+            String name = files.get(i).getName();
+            if (name.toLowerCase().endsWith(MIDI_EXTENSION))
+                name = name.substring(0, name.length() - MIDI_EXTENSION.length());
+            String unique = name;
+            for (int n = 2; !names.add(unique); n++) unique = name + "-" + n;
+            results[i] = new Result(files.get(i), new File(outDir, unique));
+        }
+
+        AtomicInteger done = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(jobs);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (Result result : results) {
+                futures.add(executor.submit(() -> {
+                    process(result, pool);
+                    report(result, done.incrementAndGet(), results.length, progress);
+                }));
+            }
+            for (int i = 0; i < results.length; i++) {
+                try {
+                    futures.get(i).get();
+                }
+                catch (ExecutionException e) {
+                    results[i].succeeded = false;
+                    results[i].error = String.valueOf(e.getCause());
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Processing was interrupted");
+        }
+        finally {
+            executor.shutdownNow();
+            pool.shutdownNow();
+        }
+
+        writeManifest(new File(outDir, MANIFEST_FILENAME), results);
+        int failed = 0;
+        for (Result result : results) {
+            if (!result.succeeded) failed++;
+        }
+        return failed;
+    }
+
+    // read, build the timeline of, and render one file, recording any failure
+    private void process(Result result, ForkJoinPool pool) {
+        try {
+            long begin = System.nanoTime();
+            SmfReader reader = new SmfReader(result.file.getPath());
+            long read = System.nanoTime();
+            NoteTimeline timeline = new NoteTimeline(reader.getEvents());
+            result.events = reader.getEvents().size();
+            result.notes = timeline.size();
+            result.peakPolyphony = timeline.getPeakPolyphony();
+            long built = System.nanoTime();
+            FrameExporter exporter = new FrameExporter(reader.getEvents(), reader.getTempoMap());
+            result.seconds = exporter.getLength() / 1e6;
+            result.frames = exporter.export(result.dir, fps, format, table, pool, null);
+            long rendered = System.nanoTime();
+
+            result.readMillis = (read - begin) / 1e6;
+            result.timelineMillis = (built - read) / 1e6;
+            result.renderMillis = (rendered - built) / 1e6;
+            result.succeeded = true;
+        }
+        catch (Exception e) {
+            result.succeeded = false;
+            result.error = (e.getMessage() != null) ? e.getMessage() : e.toString();
+        }
+    }
+
+    // print one line for a file that is done
+    private static void report(Result result, int done, int total, PrintStream progress) {
+        if (progress == null) return;
+        if (result.succeeded)
+            progress.printf("[%d/%d] %s: %d frames in %.1f s%n", done, total, result.file,
+                            result.frames, (result.readMillis + result.timelineMillis + result.renderMillis) / 1e3);
+        else
+            progress.printf("[%d/%d] %s: failed: %s%n", done, total, result.file, result.error);
+    }
+
+    // write one row per file
+    private static void writeManifest(File file, Result[] results) throws IOException {
+        try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+            out.println("file,status,events,notes,peak_polyphony,frames,seconds,read_ms,timeline_ms,render_ms,error");
+            for (Result r : results) {
+                out.printf(Locale.ROOT, "%s,%s,%d,%d,%d,%d,%.3f,%.1f,%.1f,%.1f,%s%n",
+                           csv(r.file.getPath()), r.succeeded ? "ok" : "failed", r.events, r.notes,
+                           r.peakPolyphony, r.frames, r.seconds, r.readMillis, r.timelineMillis, r.renderMillis,
+                           (r.error == null) ? "" : csv(r.error));
+            }
+        }
+    }
+
+    // quote a CSV field if needed
+    private static String csv(String field) {
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0) return field;
+        return '"' + field.replace("\"", "\"\"") + '"';
+    }
+}
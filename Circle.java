@@ -22,9 +22,7 @@ public class Circle implements Shape {
 
     // constructor
     public Circle(double x, double y, double radius) {
-        this.x = x;
-        this.y = y;
-        this.radius = radius / 2;
+        reset(x, y, radius);
     }
 
     // getters
@@ -55,6 +53,18 @@ public class Circle implements Shape {
         return coords;
     }
 
+    // get number of coordinates to draw
+    public int getNumCoords() {
+        return 1;
+    }
+
+    // copy coordinates to draw (just center)
+    public int getCoords(double[] xs, double[] ys) {
+        xs[0] = x;
+        ys[0] = y;
+        return 1;
+    }
+
     // setters
     // set x coordinate - center
     public void setX(double newX) {
@@ -71,8 +81,15 @@ public class Circle implements Shape {
         radius = newLen / 2;
     }
 
-    // draw the shape
-    public void draw() {
-        StdDraw.filledCircle(x, y, radius);
+    // set center and radius, as in the constructor
+    public void reset(double newX, double newY, double radius) {
+        this.x = newX;
+        this.y = newY;
+        this.radius = radius / 2;
+    }
+
+    // draw the shape with the renderer
+    public void draw(Renderer renderer) {
+        renderer.filledCircle(x, y, radius);
     }
 }
@@ -1,18 +1,52 @@
 /* *****************************************************************************
  *  Compilation:  javac CombineClasses.java
  *  Execution: java -classpath ".:sqlite-jdbc-mappings.jar" CombineClasses [-p] 
- *  [<midifile.mid>]
+ *  [--fps <n>] [--overflow <policy>] [--renderer <renderer>] [--seek <seconds>]
+ *  [--latency] [--trace <file>] [--channel-offsets <n,n,...>]
+ *  [--reorder-window <ms>] [<midifile.mid>]
+ *  Execution: java -classpath ".:sqlite-jdbc-mappings.jar" CombineClasses
+ *  --render-frames <dir> [--fps <n>] [--format <format>] [--threads <n>] <midifile.mid>
+ *  Execution: java -classpath ".:sqlite-jdbc-mappings.jar" CombineClasses
+ *  --batch <dir> [--fps <n>] [--format <format>] [--threads <n>] [--jobs <n>]
+ *  <mididir | midifile.mid | glob>...
  *  
  *  CombineClasses reads data from MIDI (Musical Instrument Digital Interface)
  *  input, fetches the associated visual characteristics from the database
  *  initialized by a CreateDB object, instantiates Shape subclass objects that
  *  correspond with these visual characteristics, draws the Shapes, and plays
  *  the MIDI sounds using the MIDI sequencer. CombineClasses has instance fields
- *  midiMessageQueue (a LinkedBlockingDeque of MidiMessages that queues the
- *  MidiMessages produced by the MIDI transmitter), sequencer (the Java MIDI
- *  Sequencer), db (a CreateDB object that initializes the database), currProg
- *  (an int that tracks the current program number, or instrument), and notes 
- *  (an ArrayList that stores all of the currently playing notes as Note objects).
+ *  midiEvents (a MidiEventRing, a bounded queue of the MidiMessages produced
+ *  by the MIDI transmitter stored as primitives), sequencer (the Java MIDI
+ *  Sequencer), db (a CreateDB object that initializes the database), mappings
+ *  (a MappingWatcher that holds the database in memory and reloads it when the
+ *  database changes), programs (an int array that tracks the current program
+ *  number, or instrument, of each channel), events (a MidiEventBus that routes
+ *  each MIDI event to its handlers), notes (a NoteTable that stores all of the currently
+ *  playing notes by channel and pitch, packed into longs), renderer (a Renderer
+ *  that frames are drawn with, StdDraw or Java2D), renderLoop (a
+ *  RenderLoop that draws graphics on its own thread at a fixed frame rate,
+ *  skipping frames when nothing changed), dirtyRegion (a DirtyRegion, the part
+ *  of the canvas where shapes appeared or disappeared since the last frame,
+ *  which is all that is drawn again when the renderer keeps the last frame),
+ *  and keyframes (the Keyframes of a MIDI file, the playing notes and programs
+ *  every few beats, so playback can seek to any time with the right notes
+ *  playing). While a MIDI file plays, typing , or . in the window scrubs back
+ *  or forward 5 seconds, and typing a digit 0 to 9 jumps to that tenth of it.
+ *  The time from each NOTE_ON received to the first frame that shows it is
+ *  recorded in a LatencyHistogram (latency), printed on exit with --latency.
+ *  Live performance counters (frame rate, frame times, polyphony, queue depth,
+ *  events per second, latency, ...) are kept in metrics, an EyeTunesMetrics
+ *  registered as a JMX MXBean while the source is started. MIDI messages
+ *  received, note changes, frames built and presented, and mapping reloads are
+ *  also JDK Flight Recorder events (MidiEventReceived, NoteStateChanged,
+ *  FrameBuilt, FramePresented, MappingReload). Events are only created once
+ *  Flight Recorder has been started, since loading an event class initializes
+ *  it. With verbose on (or --trace), a MidiTracer writes a line for each MIDI
+ *  message read from a background thread. Without a MIDI file, every
+ *  connected keyboard controller is listened to: each is a MidiInput (inputs)
+ *  with its own queue and channel offset, and merger (a MidiMerger) merges
+ *  their messages in time stamp order, holding them for a small reorder
+ *  window when there is more than one.
  * 
  *  MIDI message reading and playing adapted from MidiSource.java by Alan Kaplan
  *  and Nico Toy, written for Princeton University's COS 126 course.
@@ -22,20 +56,18 @@
  **************************************************************************** */
 
 import javax.sound.midi.*;
+import java.awt.Color;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.concurrent.LinkedBlockingDeque;
-import java.lang.reflect.Field;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.ResultSet;
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.awt.Color;
+import jdk.jfr.FlightRecorder;
 
 public final class CombineClasses {
 
@@ -52,97 +84,67 @@ public final class CombineClasses {
     private static final int MIDI_FILE = 1;
     private int sourceType;
 
-    // queue for midi messages produced by MIDI transmitter (keyboard controller or sequencer)
-    private LinkedBlockingDeque<MidiMessage> midiMessageQueue;
-    private MidiDevice    device;       // hardware keyboard controller
+    // queue for midi messages produced by MIDI transmitter (sequencer)
+    private MidiEventRing midiEvents = new MidiEventRing(EVENT_CAPACITY, MidiEventRing.Overflow.DROP_OLDEST);
+    // events removed from midiEvents or merged from inputs at once (MIDI message thread only)
+    private final int[]  batchEvents     = new int[EVENT_CAPACITY];
+    private final long[] batchTimeStamps = new long[EVENT_CAPACITY];
+    private List<MidiInput> inputs;     // keyboard controllers, each with its own queue
+    private MidiMerger    merger;       // merges the queues of inputs in time stamp order
     private Sequencer     sequencer;    // Java MIDI sequencer
 
-    private boolean verbose = false;    // indicates if MidiSource should print information
-                                        // about MidiMessages to stdout as messages are
-                                        // produced
+    private volatile MidiTracer tracer; // traces MidiMessages as they are read, without
+                                        // slowing down the thread that reads them; null
+                                        // if not tracing
 
     private boolean playSynth = false;  // indicates if MidiSource should play notes using
                                         // default Java Synthesizer as messages are 
                                         // produced
+    private Synthesizer   synth;        // default Java Synthesizer (keyboard controllers)
+    private MidiChannel[] channels;     // Java Synthesizer channels (keyboard controllers)
 
 
     private static CreateDB db; // database or programvisuals and colornotes
-    private static int currProg; // current program number (for adding to hashmaps)
-    // ARRAYLIST INSPIRED BY https://github.com/wizardwalk/midi-animator 
-    private static List<Note> notes; // ArrayList of notes (prog, chan, note, vel)
+    private static MappingWatcher mappings; // programvisuals and colornotes loaded in memory,
+                                            // reloaded when the database changes
+    private final int[] programs = new int[NoteTable.CHANNELS]; // current program number of each channel
+    private final MidiEventBus events = new MidiEventBus(); // routes MIDI events to handlers
+    private static NoteTable notes; // currently playing notes (prog, chan, note, vel)
+    private final Renderer renderer; // draws shapes on the canvas (StdDraw or Java2D)
+    private final RenderLoop renderLoop = new RenderLoop(); // draws frames on its own thread
+    private Keyframes keyframes; // playing notes and programs every few beats (MIDI file only)
+    private TempoMap tempoMap;   // converts ticks to microseconds (MIDI file only)
+    // tick to seek to, set by seek() and applied by the thread that reads MIDI messages, -1 if none
+    private final AtomicLong pendingSeek = new AtomicLong(-1);
+    private volatile boolean seeking = false; // true while the Sequencer is moved to a new tick
+    // time from each NOTE_ON received to the first frame that shows it
+    private final FrameLatency latency = new FrameLatency(EVENT_CAPACITY);
+    private final long startNanos = System.nanoTime(); // start of the latency clock (keyboard controller)
+    // live performance counters, registered with JMX while started
+    private final EyeTunesMetrics metrics = new EyeTunesMetrics(() -> notes.size(), () -> getQueueDepth(),
+                                                                () -> getDroppedEvents(), latency);
+
+    // copy of playing notes for drawing a frame (graphics thread only)
+    private final long[] frameNotes = new long[NoteTable.SLOTS];
+    // draw commands of a frame, sorted by color before drawing (graphics thread only)
+    private final DisplayList frameList = new DisplayList(NoteTable.SLOTS);
+    // region of the canvas that changed since the last frame drawn (graphics thread only)
+    private final DirtyRegion dirtyRegion;
+    private long frameNumber = 0; // number of frames shown (graphics thread only)
 
     // constants
     private static final int MIDI_END_OF_TRACK = 47; // MetaMessage end of track event
     private static final double MAXNUM = 128.0; // max number of 127 velocities or pitches
-
-    // short message field names for helper print method
-    // adapted from MidiSource.java
-    private static final HashMap<Integer, String> SM_FIELDS = 
-    CombineClasses.setShortMessageFields();
-    private static HashMap<Integer, String> setShortMessageFields() {
-        HashMap<Integer, String> map = new HashMap<Integer, String>();
-        Field[] declaredFields = ShortMessage.class.getDeclaredFields();
-        for (Field field : declaredFields) {
-            if (java.lang.reflect.Modifier.isStatic(field.getModifiers())) {
-                try {
-                    map.put(field.getInt(null), field.getName());
-                } catch (IllegalAccessException e) {
-                    throw new RuntimeException(e.getMessage());
-                }
-            }
-        }
-        return map;
-    }
-
-    /**
-     * Helper method - prints a MidiMessage
-     * adapted from MidiSource.java, updated to print information pertinent to
-     * EyeTunes. Useful for examining MIDI file contents before running
-     */
-    private static void print(MidiMessage message) {
-        if (message instanceof ShortMessage) {
-            ShortMessage shortMessage = (ShortMessage) message;
-            // some controllers continuously output 240 
-            if (shortMessage.getCommand() != 240) { 
-                System.out.print("ShortMessage: ");
-                System.out.print(" Command: " + SM_FIELDS.get(shortMessage.getCommand()) +
-                                 " (" + shortMessage.getCommand() + ") ");
-                System.out.print(" Channel: " + getChannel(shortMessage));
-                if (shortMessage.getCommand() ==  ShortMessage.NOTE_ON) {
-                    int pitch = getPitch(shortMessage);
-                    int velocity = getVelocity(shortMessage);
-                    System.out.print(" Pitch:   " + pitch);
-                    System.out.print(" Velocity: " + velocity);
-                }
-                else if (shortMessage.getCommand() == ShortMessage.NOTE_OFF) {
-                    System.out.print(" Pitch:   " + getPitch(shortMessage));
-                    System.out.print(" Velocity: " + getVelocity(shortMessage));
-                }
-                else if (shortMessage.getCommand() == ShortMessage.CONTROL_CHANGE) {
-                    System.out.print(" Number:   " + shortMessage.getData1());
-                    System.out.print(" Data2:    " + shortMessage.getData2());
-                } else if (shortMessage.getCommand() == ShortMessage.PROGRAM_CHANGE) {
-                    // https://www.songstuff.com/recording/article/midi_message_format/
-                    int chan = shortMessage.getData2(); // channel number
-                    int prog = shortMessage.getData1(); // program number
-                    System.out.println("Channel: " + chan);
-                    System.out.println("Program: " + prog);
-                } else {
-                    System.out.print(" Data1:    " + shortMessage.getData1());
-                    System.out.print(" Data2:    " + shortMessage.getData2());
-                }
-                System.out.println();
-            }
-            else if (message instanceof SysexMessage) {
-                System.out.println("SysexMessage");
-            }
-            else if (message instanceof MetaMessage) {
-                System.out.print("MetaMessage: ");
-                MetaMessage metaMessage = (MetaMessage) message;
-                System.out.println(metaMessage.getType());                  
-            }
-        }
-    }
+    public static final int DEFAULT_FPS = 60; // default frame rate
+    private static final int DEFAULT_JOBS = 4; // default number of files rendered at once by --batch
+    private static final long POLL_NANOS = 100000000L; // max time to wait for a MidiMessage (100 ms)
+    private static final int EVENT_CAPACITY = 4096; // max number of queued MidiMessages (power of two)
+    public static final long REORDER_MICROS = 2000; // default time controllers' events are held to merge them (2 ms)
+    private static final int KEYFRAME_BEATS = 4; // beats (quarter notes) between keyframes
+    private static final long SCRUB_MICROS = 5000000L; // time scrubbed by one key (5 seconds)
+    // graphic is 16:9 aspect ratio, shapes are 1280:720 but buffered canvas is 1360:765
+    public static final int WIDTH = 1360; // canvas width in pixels
+    public static final int HEIGHT = 765; // canvas height in pixels
 
     
     /* 
@@ -154,172 +156,170 @@ public final class CombineClasses {
     */
 
     /**
-     * Private helper class that receives MidiMessages from MIDI Keyboard, 
-     * and adds each MIDI message received to a MidiMessage queue. As messages
-     * are added to the MidiMessage queue, also updates notes ArrayList for
-     * graphics generation. Optionally (1) prints messages to terminal and 
-     * (2) plays messages using Java Synthesizer. Adapted from MidiSource.java
-     * and updated with graphics generation data structures.
+     * Private helper class that receives MidiMessages from a MIDI Keyboard (one
+     * of the inputs), and adds each MIDI message received to the input's queue,
+     * from which the merger passes it on in time stamp order and the notes
+     * NoteTable is updated for graphics generation. Optionally plays messages
+     * using Java Synthesizer. Adapted from MidiSource.java and updated with
+     * graphics generation data structures.
      */
     private class MidiKeyboardControllerReceiver implements Receiver {
-        private boolean       verbose   = false; // default - do not print message
-        private boolean       playSynth = false; // default - do not play synthesizer
-        private Synthesizer   synth     = null;  // default Java Synthesizer
-        private MidiChannel[] channels  = null;  // defaul - Java Sythesizer channels
-        public MidiKeyboardControllerReceiver(boolean verbose, boolean playSynth) {
-            midiMessageQueue = new LinkedBlockingDeque<MidiMessage>();
-            this.verbose   = verbose;
-            this.playSynth = playSynth;
-
-            // if this Receiver needs to play notes, set up channels
-            if (playSynth) {
-                try {
-                    synth = MidiSystem.getSynthesizer();
-                }
-                catch (MidiUnavailableException e) { 
-                    e.printStackTrace();
-                    System.exit(1);
-                }
-                try {
-                    synth.open();
-                }
-                catch (MidiUnavailableException e) {
-                    e.printStackTrace();
-                    System.exit(1);
-                }
-                channels = synth.getChannels();
-            }
+        private final MidiInput input; // keyboard controller the messages come from
+
+        public MidiKeyboardControllerReceiver(MidiInput input) {
+            this.input = input;
         }
 
         @Override
         // Invoked each time Receiver gets a MidiMessage
         public void send(MidiMessage message, long timeStamp) {
-            // add the message to the queue
-            midiMessageQueue.add(message);
-            
-            // update notes for graphics generation
-            if (message instanceof ShortMessage) {
-                ShortMessage shortMessage = (ShortMessage) message;
-                if (shortMessage.getCommand() == ShortMessage.PROGRAM_CHANGE) {
-                    // https://www.songstuff.com/recording/article/midi_message_format/
-                    currProg = shortMessage.getData1(); // program number
-                }
-                else if (shortMessage.getCommand() == ShortMessage.NOTE_ON) {
-                    Note noteOn = new Note(currProg, getChannel(shortMessage), 
-                    getPitch(shortMessage), getVelocity(shortMessage));
-                    notes.add(noteOn);
-                }
-                else if (shortMessage.getCommand() == ShortMessage.NOTE_OFF) {
-                    int thisChan = getChannel(shortMessage);
-                    int thisPitch = getPitch(shortMessage);
-                    for (int i = 0; i < notes.size(); i++) {
-                        Note check = notes.get(i);
-                        int checkProg = check.getProg();
-                        int checkChan = check.getChan();
-                        int checkPitch = check.getPitch();
-                        if (checkProg == currProg && checkChan == thisChan 
-                        && checkPitch == thisPitch) notes.remove(check);
-                    }
-                }
-            }
+            // add the message to the input's queue, notes are updated when it is read; the
+            // device's timeStamp is mapped to the clock frames are shown on
+            long received = input.receive(timeStamp, now());
+            queueEvent(message, received, input);
+            merger.signal();
 
-            // print message
-            if (verbose)
-                print(message);
-
-            // play this note for a keyboard controller
+            // play this note for a keyboard controller, on its channel after the offset
             if (playSynth)
                 if (message instanceof ShortMessage) {
                     ShortMessage shortMessage = (ShortMessage) message;
+                    int channel = input.mapStatus(shortMessage.getStatus()) & 0x0F;
                     if (shortMessage.getCommand() == ShortMessage.NOTE_ON) 
-                        channels[getChannel(shortMessage)].noteOn(getPitch(shortMessage),
-                        getVelocity(shortMessage));
+                        channels[channel].noteOn(getPitch(shortMessage), getVelocity(shortMessage));
                     else if (shortMessage.getCommand() == ShortMessage.NOTE_OFF) {
-                        channels[getChannel(shortMessage)].noteOff(getPitch(shortMessage),
-                        getVelocity(shortMessage));
+                        channels[channel].noteOff(getPitch(shortMessage), getVelocity(shortMessage));
                     }
                 }
         }
                                                                    
         // close the Receiver stream
         public void close() {
-            synth.close();
-            midiMessageQueue = null;
         }
     }
 
     /**
      * Private helper class that receives MidiMessages from MIDI file input, 
-     * and adds each MIDI message received to a MidiMessage queue. As messages
-     * are added to the MidiMessage queue, also updates notes ArrayList for
-     * graphics generation. Optionally prints messages to terminal. Adapted from
-     * MidiSource.java and updated with graphics generation data structures.
+     * and adds each MIDI message received to the midiEvents queue, from which
+     * the notes NoteTable is updated for graphics generation. Adapted from MidiSource.java
+     * and updated with graphics generation data structures.
      */
     private class MidiFileReceiver implements Receiver {
-        private boolean     verbose    = false; // default - do not print message
-        public MidiFileReceiver(boolean verbose) {
-            midiMessageQueue = new LinkedBlockingDeque<MidiMessage>();
-            this.verbose   = verbose;
-        }
 
         @Override
         // Invoked each time Receiver gets a MidiMessage
         public void send(MidiMessage message, long timeStamp) {
+            // messages sent while seeking (notes stopped by the Sequencer) are replaced
+            // by the keyframe
+            if (seeking) return;
+
+            // add the message to the queue, notes are updated when it is read, stamped with
+            // the Sequencer's position when it was received
+            queueEvent(message, now(), null);
+        }                                
+                            
+        // close the Receiver stream
+        public void close() {
+        }
+    }
+
+    /**
+     * Private helper class that draws frames on its own thread at a fixed frame
+     * rate, independently of when MidiMessages arrive. Each frame is scheduled
+     * with System.nanoTime(); if drawing falls behind, missed frames are dropped
+     * rather than drawn late. When nothing has changed since the last frame (no
+     * note changed and the mappings were not reloaded), even while notes are
+     * playing, no frame is built or shown: the thread parks (using no CPU) until
+     * a receiver calls requestFrame().
+     */
+    private class RenderLoop implements Runnable {
+        private static final long IDLE_NANOS = 100000000L; // max time parked (100 ms)
+        private long frameNanos = 1000000000L / DEFAULT_FPS; // time between frames
+        private volatile boolean dirty  = true;  // true if a frame was requested
+        private volatile boolean parked = false; // true while idle
+        private volatile boolean running = false;
+        private Thread thread;
+
+        // set frame rate (frames per second)
+        public void setFrameRate(int fps) {
+            if (fps <= 0) throw new IllegalArgumentException("Frame rate must be positive: " + fps);
+            frameNanos = 1000000000L / fps;
+        }
+
+        // start drawing frames on the graphics thread
+        public synchronized void start() {
+            if (thread != null) return;
+            running = true;
+            thread = new Thread(this, "EyeTunes-graphics");
+            thread.start();
+        }
+
+        // stop drawing frames
+        public synchronized void close() {
+            running = false;
+            if (thread != null) LockSupport.unpark(thread);
+        }
 
-            // add the message to the queue
-            midiMessageQueue.add(message);
+        // request a new frame, waking the graphics thread if it is idle
+        public void requestFrame() {
+            dirty = true;
+            if (parked) LockSupport.unpark(thread);
+        }
 
-            // update notes for graphics generation
-            if (message instanceof ShortMessage) {
-                ShortMessage shortMessage = (ShortMessage) message;
-                if (shortMessage.getCommand() == ShortMessage.PROGRAM_CHANGE) {
-                    https://www.songstuff.com/recording/article/midi_message_format/
-                    currProg = shortMessage.getData1(); // program number
+        // graphics thread - draw frames until the source is no longer active
+        public void run() {
+            int lastVersion = -1;
+            MappingTable lastTable = null;
+            long next = System.nanoTime();
+            while (running && isActive()) {
+                // keys typed in the window
+                while (renderer.hasNextKeyTyped()) {
+                    scrub(renderer.nextKeyTyped());
                 }
-                else if (shortMessage.getCommand() == ShortMessage.NOTE_ON) {
-                    Note noteOn = new Note(currProg, getChannel(shortMessage),
-                    getPitch(shortMessage), getVelocity(shortMessage));
-                    notes.add(noteOn);
+
+                // idle - nothing changed
+                int version = notes.getVersion();
+                MappingTable table = mappings.current();
+                if (!dirty && version == lastVersion && table == lastTable) {
+                    parked = true;
+                    if (!dirty) LockSupport.parkNanos(this, IDLE_NANOS);
+                    parked = false;
+                    next = System.nanoTime();
+                    continue;
                 }
-                else if (shortMessage.getCommand() == ShortMessage.NOTE_OFF) {
-                    int thisChan = getChannel(shortMessage);
-                    int thisPitch = getPitch(shortMessage);
-                    for (int i = 0; i < notes.size(); i++) {
-                        Note check = notes.get(i);
-                        int checkProg = check.getProg();
-                        int checkChan = check.getChan();
-                        int checkPitch = check.getPitch();
-                        if (checkProg == currProg && checkChan == thisChan
-                        && checkPitch == thisPitch) notes.remove(check);
-                    }
+
+                // draw frame, then measure the NOTE_ONs it is the first to show
+                dirty = false;
+                lastVersion = version;
+                lastTable = table;
+                if (graphics()) latency.frameShown(version, now());
+                else latency.frameSkipped(version);
+
+                // wait for next frame, dropping frames if behind
+                next += frameNanos;
+                long now = System.nanoTime();
+                if (now - next > frameNanos) next = now;
+                while (running && (now = System.nanoTime()) < next) {
+                    LockSupport.parkNanos(this, next - now);
                 }
             }
-            // print message?
-            if (verbose)
-                print(message);
-        }                                
-                            
-        // close the Receiver stream
-        public void close() {
-            midiMessageQueue = null;
+            // the graphics thread owns the renderer
+            renderer.close();
         }
     }
 
     /**
-     * Search for connected Midi Keyboard controller. If found, returns an
-     * opened MidiDevice. Adapted from MidiSource.java.
+     * Search for connected Midi Keyboard controllers. Returns a MidiInput for
+     * each opened MidiDevice with a Transmitter, in the order the devices are
+     * installed. Adapted from MidiSource.java.
      *
-     * @param verbose          log information about the device to stdout
+     * @param verbose          log information about the devices to stdout
+     * @return keyboard controllers found, empty if none
      */
-    private static MidiDevice openMidiController(boolean verbose) {
-
-        // set default StdDraw color
-        StdDraw.clear(StdDraw.BLACK);
-        StdDraw.setPenColor(StdDraw.WHITE);
+    private static List<MidiInput> openMidiControllers(boolean verbose) {
+        List<MidiInput> controllers = new ArrayList<MidiInput>();
 
         // get installed Midi devices 
         MidiDevice.Info deviceInfo[] = MidiSystem.getMidiDeviceInfo();
-        MidiDevice device = null;
         for (int i = 0; i < deviceInfo.length; i++) {
             if (verbose) {
                 System.out.print("DEVICE " + i + ": ");
@@ -327,6 +327,7 @@ public final class CombineClasses {
                 System.out.print(deviceInfo[i].getVendor() + ", ");
                 System.out.print(deviceInfo[i].getDescription() + ", ");
             }
+            MidiDevice device;
             try {
                 device = MidiSystem.getMidiDevice(deviceInfo[i]);
                 if (verbose)
@@ -351,8 +352,9 @@ public final class CombineClasses {
                 }
 
                 // check for a valid Transmitter
+                Transmitter transmitter;
                 try {
-                    Transmitter transmitter = device.getTransmitter();
+                    transmitter = device.getTransmitter();
                 } catch (MidiUnavailableException e) {
                     if (verbose)
                         System.out.println("Failed to get transmitter, trying next...");
@@ -361,15 +363,14 @@ public final class CombineClasses {
                 }
                 if (verbose)
                     System.out.println("Valid MIDI controller connected.");
-                break;
+                controllers.add(new MidiInput(deviceInfo[i].getName(), device, transmitter));
             }
             else {
                 if (verbose)
                     System.out.println("Not a MIDI keyboard controller, trying next...");
-                device = null;
             }
         }
-        return device;
+        return controllers;
     }
 
 
@@ -382,48 +383,94 @@ public final class CombineClasses {
     */
 
     /**
-     * Creates a CombineClasses object that listens to the first found connected MIDI
-     * input device (MIDI Keyboard). Adapted from MidiSource.java and updated with 
-     * graphics generation data structures. Sets StdDraw canvas size, and initializes
-     * audiovisual database and notes ArrayList.
+     * Creates a CombineClasses object that listens to every connected MIDI
+     * input device (MIDI Keyboard), drawing with StdDraw. Adapted from MidiSource.java and
+     * updated with graphics generation data structures.
      *
-     * @param verbose true turns on logging
+     * @param verbose true turns on logging, tracing MidiMessages to stdout
      * @param connectToSynth use default Java sound synthesizer
      * @throws RuntimeException if no device was found or if writing to the log
      *                          file failed
      */
     public CombineClasses(boolean verbose, boolean connectToSynth) {
-        // graphic is 16:9 aspect ratio, shapes are 1280:720 but buffered canvas is 1360:765
-        StdDraw.setCanvasSize(1360, 765);        
+        this(new StdDrawRenderer(WIDTH, HEIGHT), verbose, connectToSynth);
+    }
 
-        MidiDevice  keyboard = openMidiController(verbose);
-        if (keyboard == null)
+    /**
+     * Creates a CombineClasses object that listens to every connected MIDI
+     * input device (MIDI Keyboard), merging their messages in time stamp order.
+     * Adapted from MidiSource.java and updated with graphics generation data
+     * structures.
+     *
+     * @param renderer Renderer that frames are drawn with
+     * @param verbose true turns on logging, tracing MidiMessages to stdout
+     * @param connectToSynth use default Java sound synthesizer
+     * @throws RuntimeException if no device was found or if writing to the log
+     *                          file failed
+     */
+    public CombineClasses(Renderer renderer, boolean verbose, boolean connectToSynth) {
+        this(renderer, openMidiControllers(verbose), verbose, connectToSynth);
+    }
+
+    /**
+     * Creates a CombineClasses object that listens to the given MIDI inputs
+     * (keyboard controllers, or VirtualTransmitters standing in for them),
+     * merging their messages in time stamp order. Initializes audiovisual
+     * database and notes NoteTable.
+     *
+     * @param renderer Renderer that frames are drawn with
+     * @param inputs MIDI inputs to listen to
+     * @param verbose true turns on logging, tracing MidiMessages to stdout
+     * @param connectToSynth use default Java sound synthesizer
+     * @throws RuntimeException if there are no inputs or if writing to the log
+     *                          file failed
+     */
+    public CombineClasses(Renderer renderer, List<MidiInput> inputs, boolean verbose, boolean connectToSynth) {
+        this.renderer = renderer;
+        dirtyRegion = new DirtyRegion(renderer.getWidth(), renderer.getHeight(), NoteTable.SLOTS);
+        frameList.setPadding(dirtyRegion.getPaddingX(), dirtyRegion.getPaddingY());
+
+        if (inputs.isEmpty())
             throw new RuntimeException("Unable to connect to a MIDI keyboard controller.");
+        this.inputs = new ArrayList<MidiInput>(inputs);
+        merger = new MidiMerger(this.inputs, this::now, REORDER_MICROS);
+        sourceType = MIDI_CONTROLLER;
 
-        try {
-            Transmitter transmitter = keyboard.getTransmitter();
-            transmitter.setReceiver(new MidiKeyboardControllerReceiver(verbose, connectToSynth));
-            sourceType = MIDI_CONTROLLER;
+        // one Synthesizer plays the notes of all inputs
+        playSynth = connectToSynth;
+        if (playSynth) {
+            try {
+                synth = MidiSystem.getSynthesizer();
+                synth.open();
+            }
+            catch (MidiUnavailableException e) { 
+                e.printStackTrace();
+                System.exit(1);
+            }
+            channels = synth.getChannels();
         }
-        catch (MidiUnavailableException e) {
-            e.printStackTrace();
-            System.exit(1);
+
+        if (verbose) tracer = new MidiTracer(System.out, false);
+        for (MidiInput input : this.inputs) {
+            input.getTransmitter().setReceiver(new MidiKeyboardControllerReceiver(input));
         }
 
+        registerHandlers();
         db = new CreateDB();
-        notes = new ArrayList<Note>();
+        mappings = new MappingWatcher(CreateDB.FILENAME, loadMappings());
+        mappings.start();
+        notes = new NoteTable();
     }
 
     /**
      * Creates a CombineClasses object that produces MIDI messages from a 
      * time-stamped MIDI file, where each message is buffered and becomes 
      * available for consumption by the client once it is "played" from the
-     * file. Adapted from MidiSource.java and updated with graphics generation
-     * data structures. Sets StdDraw canvas size, and initializes audiovisual 
-     * database and notes ArrayList.
+     * file, drawing with StdDraw. Adapted from MidiSource.java and updated with
+     * graphics generation data structures.
      * 
      * @param filename          the name of the file to play from
-     * @param verbose true turns on logging
+     * @param verbose true turns on logging, tracing MidiMessages to stdout
      * @param connectToSynth    true if Sequencer should connect to Sequencer 
      *                          (use default Java sound synthesizer)
      * @throws RuntimeException if the file is not found or not a valid MIDI
@@ -431,9 +478,30 @@ public final class CombineClasses {
      *                          writing to the log file failed
      */
     public CombineClasses(String filename, boolean verbose, boolean connectToSynth) {
-        // animation is 16:9 aspect ratio; shapes are 1280:720, buffered canvas is 1360:765
-        StdDraw.setCanvasSize(1360, 765);
-        
+        this(new StdDrawRenderer(WIDTH, HEIGHT), filename, verbose, connectToSynth);
+    }
+
+    /**
+     * Creates a CombineClasses object that produces MIDI messages from a 
+     * time-stamped MIDI file, where each message is buffered and becomes 
+     * available for consumption by the client once it is "played" from the
+     * file. Adapted from MidiSource.java and updated with graphics generation
+     * data structures. Initializes audiovisual database and notes NoteTable.
+     * 
+     * @param renderer          Renderer that frames are drawn with
+     * @param filename          the name of the file to play from
+     * @param verbose true turns on logging, tracing MidiMessages to stdout
+     * @param connectToSynth    true if Sequencer should connect to Sequencer 
+     *                          (use default Java sound synthesizer)
+     * @throws RuntimeException if the file is not found or not a valid MIDI
+     *                          file, if reading from the file failed, or if 
+     *                          writing to the log file failed
+     */
+    public CombineClasses(Renderer renderer, String filename, boolean verbose, boolean connectToSynth) {
+        this.renderer = renderer;
+        dirtyRegion = new DirtyRegion(renderer.getWidth(), renderer.getHeight(), NoteTable.SLOTS);
+        frameList.setPadding(dirtyRegion.getPaddingX(), dirtyRegion.getPaddingY());
+
         playSynth  = connectToSynth;
         sourceType = MIDI_FILE;
         try {
@@ -451,9 +519,10 @@ public final class CombineClasses {
         }
 
         // connect file to sequencer
+        if (verbose) tracer = new MidiTracer(System.out, false);
         try {
             sequencer.setSequence(fileInputStream);
-            sequencer.getTransmitter().setReceiver(new MidiFileReceiver(verbose));
+            sequencer.getTransmitter().setReceiver(new MidiFileReceiver());
         } catch (IOException e) {
             throw new RuntimeException("Error reading file: " + filename);
         } catch (InvalidMidiDataException e) {
@@ -461,16 +530,20 @@ public final class CombineClasses {
         } catch (MidiUnavailableException e) {
             throw new RuntimeException("MIDI unavailable: " + filename);
         }
+
+        // record keyframes for seeking
+        Sequence sequence = sequencer.getSequence();
+        tempoMap = new TempoMap(sequence);
+        keyframes = new Keyframes(new EventList(sequence), tempoMap,
+                                  (long) KEYFRAME_BEATS * sequence.getResolution());
         
         try {
             // Add a listener for meta message events
+            // MetaMessages arrive on the Sequencer's event thread rather than the transmitter
+            // thread, so they are routed directly instead of through the midiEvents queue
             sequencer.addMetaEventListener(new MetaEventListener() {
                     public void meta(MetaMessage event) {
-                        // close the Sequencer when done
-                        if (event.getType() == MIDI_END_OF_TRACK) {
-                            // Sequencer is done playing
-                            close();
-                        }
+                        events.dispatch(MidiEventRing.pack(MidiEventRing.META, event.getType(), 0), -1);
                     }
                 });
             sequencer.open();
@@ -478,8 +551,11 @@ public final class CombineClasses {
             e.printStackTrace();
         }
 
+        registerHandlers();
         db = new CreateDB();
-        notes = new ArrayList<Note>();
+        mappings = new MappingWatcher(CreateDB.FILENAME, loadMappings());
+        mappings.start();
+        notes = new NoteTable();
     }
 
 
@@ -491,6 +567,25 @@ public final class CombineClasses {
     *
     */
 
+    /**
+     * Static helper method. Loads the mappings database into memory once, so
+     * that graphics() does not query the database for every note. If the
+     * database cannot be read, no notes are mapped to shapes.
+     *
+     * @return MappingTable of programvisuals and colornotes
+     */
+    private static MappingTable loadMappings() {
+        try {
+            return MappingTable.load(CreateDB.URL);
+        }
+        catch (SQLException e) {
+            // if the error message is "out of memory",
+            // it probably means no database file is found
+            System.err.println(e.getMessage());
+            return MappingTable.empty();
+        }
+    }
+
     /**
      * Static helper method. Extract the pitch from a short
      * MIDI message, where commmand == NOTE_ON or NOTE_OFF
@@ -525,17 +620,65 @@ public final class CombineClasses {
     }
 
     /**
-     * Starts the MIDI source so it can produce messages. Adapted from MidiSource.java.
+     * Traces each MidiMessage read with a MidiTracer, replacing the tracer created
+     * for verbose. Must be called before start(); the tracer is started by start() and
+     * closed by close().
+     *
+     * @param tracer MidiTracer to trace messages with, or null to not trace
+     */
+    public void setTracer(MidiTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    // get MIDI inputs listened to, empty if playing a MIDI file
+    public List<MidiInput> getInputs() {
+        if (sourceType != MIDI_CONTROLLER) return new ArrayList<MidiInput>();
+        return new ArrayList<MidiInput>(inputs);
+    }
+
+    /**
+     * Sets the time that messages from the MIDI inputs are held, so that a message
+     * that arrives a little after a later message from another input is still
+     * merged in time stamp order. Longer windows merge more messages in order but
+     * delay every note by the window. Ignored with a single input or a MIDI file.
+     *
+     * @param window time in microseconds, REORDER_MICROS by default
+     */
+    public void setReorderWindow(long window) {
+        if (sourceType == MIDI_CONTROLLER) merger.setWindow(window);
+    }
+
+    /**
+     * Sets the frame rate at which graphics are drawn. Must be called before start().
+     *
+     * @param fps frames per second (for example 30, 60, or 120)
+     */
+    public void setFrameRate(int fps) {
+        renderLoop.setFrameRate(fps);
+    }
+
+    /**
+     * Starts the MIDI source so it can produce messages, and starts drawing graphics
+     * on the graphics thread. Adapted from MidiSource.java.
      *
      */
     public void start () {
         if (sourceType == MIDI_CONTROLLER) {
+            for (int i = 0; i < inputs.size(); i++) {
+                MidiInput input = inputs.get(i);
+                System.out.println("MIDI controller " + i + ": " + input.getName()
+                                   + " (channel offset " + input.getChannelOffset() + ")");
+            }
         }
 
         else if (sourceType == MIDI_FILE) {
+            applySeek();
             sequencer.start();
         }
         else throw new RuntimeException("MidiSource: Illegal source type: " + sourceType);
+        if (tracer != null) tracer.start();
+        metrics.register();
+        renderLoop.start();
     }
 
     /**
@@ -543,8 +686,13 @@ public final class CombineClasses {
      * the MIDI file.
      */
     public void close() {
-        if (sourceType == MIDI_CONTROLLER && device.isOpen()) {
-            device.close();
+        renderLoop.close();
+        mappings.close();
+        metrics.unregister();
+        if (tracer != null) tracer.close();
+        if (sourceType == MIDI_CONTROLLER) {
+            for (MidiInput input : inputs) input.close();
+            if (synth != null) synth.close();
         }
         else if (sourceType == MIDI_FILE) {
             sequencer.stop();
@@ -561,239 +709,529 @@ public final class CombineClasses {
      */
     public boolean isActive() {
         if (sourceType == MIDI_CONTROLLER) {
-            return device.isOpen();
+            for (MidiInput input : inputs) {
+                if (input.isOpen()) return true;
+            }
+            return false;
         }
         else if (sourceType == MIDI_FILE) {
-            return sequencer.isRunning();
+            // the Sequencer is stopped while seeking
+            return seeking || sequencer.isRunning();
         }
         else {
             return false;
         }
     }
 
+    /**
+     * Moves playback of the MIDI file to the given time. Can be called from any
+     * thread, before or during playback; the thread that reads MIDI messages
+     * moves the Sequencer and restores the playing notes and programs from the
+     * nearest keyframe, so the canvas shows the notes playing at that time
+     * instead of waiting for new NOTE_ONs. Times are clamped to the length of
+     * the file.
+     *
+     * @param time time in microseconds from the start of the MIDI file
+     * @throws IllegalStateException if listening to a MIDI keyboard controller
+     */
+    public void seek(long time) {
+        if (sourceType != MIDI_FILE)
+            throw new IllegalStateException("Cannot seek a MIDI keyboard controller");
+        long tick = tempoMap.toTick(Math.max(time, 0));
+        pendingSeek.set(Math.min(tick, sequencer.getTickLength()));
+    }
+
+    /**
+     * Returns the time of playback of the MIDI file, including a seek that has
+     * not been applied yet.
+     *
+     * @return time in microseconds from the start of the MIDI file, 0 if listening
+     *         to a MIDI keyboard controller
+     */
+    public long getPosition() {
+        if (sourceType != MIDI_FILE) return 0;
+        long tick = pendingSeek.get();
+        if (tick < 0) tick = sequencer.getTickPosition();
+        return tempoMap.toMicros(tick);
+    }
+
+    /**
+     * Helper method - applies the last seek() (on the thread that reads MIDI
+     * messages). Messages from the Sequencer are ignored while it is stopped and
+     * moved, the queued messages from before the seek are discarded, and the
+     * playing notes and programs are restored from the nearest keyframe.
+     */
+    private void applySeek() {
+        long tick = pendingSeek.getAndSet(-1);
+        if (tick < 0) return;
+        boolean running = sequencer.isRunning();
+        seeking = true;
+        sequencer.stop();
+        sequencer.setTickPosition(tick);
+        midiEvents.clear();
+        keyframes.seek(tick, notes, programs, events);
+        latency.restart();
+        seeking = false;
+        renderLoop.requestFrame();
+        if (running) sequencer.start();
+    }
+
+    /**
+     * Helper method - scrubs playback of the MIDI file with a key typed in the
+     * window: , and . move back and forward SCRUB_MICROS, and a digit 0 to 9
+     * jumps to that tenth of the file. Other keys are ignored.
+     *
+     * @param key key typed
+     */
+    private void scrub(char key) {
+        if (sourceType != MIDI_FILE) return;
+        if (key == ',' || key == '<')
+            seek(getPosition() - SCRUB_MICROS);
+        else if (key == '.' || key == '>')
+            seek(getPosition() + SCRUB_MICROS);
+        else if (key >= '0' && key <= '9')
+            seek(tempoMap.toMicros(sequencer.getTickLength()) * (key - '0') / 10);
+    }
+
+    /**
+     * Helper method - returns the time on the clock that MidiMessages are stamped with when
+     * they are received and frames when they are shown: the Sequencer's position while a MIDI
+     * file plays, so latency is measured against the music, or the time since this object was
+     * created for a keyboard controller.
+     *
+     * @return time in microseconds
+     */
+    private long now() {
+        if (sourceType == MIDI_FILE) return sequencer.getMicrosecondPosition();
+        return (System.nanoTime() - startNanos) / 1000;
+    }
+
+    // get histogram of the times from each NOTE_ON received to the first frame that shows it
+    public LatencyHistogram getLatency() {
+        return latency.getHistogram();
+    }
+
+    /**
+     * Prints the percentiles of the times from each NOTE_ON received to the first frame that
+     * shows it being presented, and the number of NOTE_ONs not measured.
+     *
+     * @param out stream to print to
+     */
+    public void printLatency(PrintStream out) {
+        latency.print(out);
+    }
+
+    /**
+     * Prints the messages received, dropped, and merged out of time stamp order from
+     * each MIDI input, and the offset of its clock. Prints nothing for a MIDI file.
+     *
+     * @param out stream to print to
+     */
+    public void printInputs(PrintStream out) {
+        if (sourceType != MIDI_CONTROLLER) return;
+        for (int i = 0; i < inputs.size(); i++) {
+            MidiInput input = inputs.get(i);
+            out.print("MIDI controller " + i + ": " + input.getName() + ", received " + input.getReceived()
+                      + ", dropped " + input.getDropped() + ", late " + input.getLate());
+            if (input.getClockOffset() != Long.MAX_VALUE)
+                out.print(", clock offset " + input.getClockOffset() + " us");
+            out.println();
+        }
+    }
+
     /**
      * Return whether there are new MidiMessages available.
      *
      * @return true if and only if there are new messages available to consume
      */
     public boolean isEmpty() {
-        return midiMessageQueue.isEmpty();
+        if (sourceType == MIDI_CONTROLLER) return merger.isEmpty();
+        return midiEvents.isEmpty();
     }
 
     /**
-     * Return the next available MIDI ShortMessage (in FIFO order) from MidiMessageQueue. 
-     * Generates current state of graphics first, then removes messages from queue until
-     * it encounters a ShortMessage. Uses a ControllerEventListener to detect control
-     * change, which checks the type of message and generates updated graphics. Returns
-     * found ShortMessage or null if queue is empty.
+     * Sets what happens when MidiMessages arrive faster than they are read and the
+     * midiEvents queue (or the queue of a MIDI input) is full: wait for room, drop
+     * the oldest, or drop the newest.
      *
-     * @return The next available {@link MidiMessage}
-     */
-    private ShortMessage getMidiMessage() {
-        // https://www.tabnine.com/code/java/methods/javax.sound.midi.Sequencer/addMetaEventListener
-        int[] allControllersMask = new int[128];
-        for (int i = 0; i < allControllersMask.length; i++) {
-            allControllersMask[i] = i;
-        }
-        graphics();
-        while (!this.isEmpty()) {
-            MidiMessage message = midiMessageQueue.remove();
-            if (message instanceof ShortMessage) {
-                ShortMessage m = (ShortMessage) message;
-                sequencer.addControllerEventListener(new ControllerEventListener() {
-                    public void controlChange(ShortMessage m) {
-                        if (m.getCommand() == ShortMessage.NOTE_ON || 
-                        m.getCommand() == ShortMessage.NOTE_OFF || 
-                        getVelocity(m) > -1) graphics();
-                    }   
-                }, allControllersMask);
-                return m;
-            }
+     * @param overflow policy when the queue is full
+     */
+    public void setOverflow(MidiEventRing.Overflow overflow) {
+        if (sourceType == MIDI_CONTROLLER) merger.setOverflow(overflow);
+        else midiEvents.setOverflow(overflow);
+    }
+
+    // get number of MidiMessages waiting to be read
+    public int getQueueDepth() {
+        if (sourceType == MIDI_CONTROLLER) return merger.size();
+        return midiEvents.size();
+    }
+
+    // get number of MidiMessages dropped because the queue was full
+    public long getDroppedEvents() {
+        if (sourceType == MIDI_CONTROLLER) return merger.getDropped();
+        return midiEvents.getDropped();
+    }
+
+    // get number of notes playing
+    public int getNotesPlaying() {
+        return notes.size();
+    }
+
+    /**
+     * Helper method - adds a MidiMessage to the midiEvents queue, or to the queue
+     * of the MIDI input it came from with its channel moved by the input's channel
+     * offset, as primitives. ShortMessages are stored as their status and data
+     * bytes, and MetaMessages as the META status and their type. System messages
+     * (status 0xF0 and up, which some controllers output continuously) and
+     * SysexMessages are not queued.
+     */
+    private void queueEvent(MidiMessage message, long timeStamp, MidiInput input) {
+        int status, data1, data2;
+        if (message instanceof ShortMessage) {
+            ShortMessage shortMessage = (ShortMessage) message;
+            if (shortMessage.getStatus() >= 0xF0) return;
+            status = (input == null) ? shortMessage.getStatus() : input.mapStatus(shortMessage.getStatus());
+            data1 = shortMessage.getData1();
+            data2 = shortMessage.getData2();
         }
-        return null; // if empty
+        else if (message instanceof MetaMessage) {
+            status = MidiEventRing.META;
+            data1 = ((MetaMessage) message).getType();
+            data2 = 0;
+        }
+        else return;
+        MidiEventRing queue = (input == null) ? midiEvents : input.getEvents();
+        boolean queued = queue.offer(status, data1, data2, timeStamp);
+
+        // Flight Recorder event, only created once Flight Recorder has been started
+        if (!FlightRecorder.isInitialized()) return;
+        MidiEventReceived event = new MidiEventReceived();
+        if (event.isEnabled()) {
+            event.command = (status == MidiEventRing.META) ? status : status & 0xF0;
+            event.channel = (status == MidiEventRing.META) ? 0 : status & 0x0F;
+            event.data1 = data1;
+            event.data2 = data2;
+            event.queueDepth = queue.size();
+            event.queued = queued;
+            event.commit();
+        }
+    }
+
+    /**
+     * Reads all available MIDI events (in FIFO order) from the midiEvents queue at once,
+     * or the events of the MIDI inputs merged in time stamp order, waiting up to POLL_NANOS
+     * for an event to arrive, traces them, and routes them to their handlers through the
+     * events MidiEventBus. Returns the number of events read, or 0 if no event arrived.
+     * Called only by the thread that reads MIDI events (main, or a benchmark).
+     *
+     * @return number of events read
+     */
+    int readMidiEvents() {
+        if (sourceType == MIDI_FILE) applySeek();
+        int count;
+        if (sourceType == MIDI_CONTROLLER)
+            count = merger.drain(batchEvents, batchTimeStamps, POLL_NANOS);
+        else
+            count = midiEvents.drain(batchEvents, batchTimeStamps, POLL_NANOS);
+        MidiTracer trace = tracer;
+        if (trace != null) trace.trace(batchEvents, batchTimeStamps, count);
+        metrics.eventsRead(batchEvents, count);
+        events.dispatch(batchEvents, batchTimeStamps, count);
+        return count;
     }
 
     /**
-     * Graphics generator. First enables double buffering for faster shape drawing and clears
-     * screen to default black background. Iterates through notes ArrayList and for each note,
-     * extracts pitch, velocity, program number, and channel number. Uses these values to 
-     * select from the database to get color as an RGB value, shape, and quadrant. Sets pen 
-     * color to new Color object initialized from RGB values. Uses velocity to calculate size,
-     * and pitch and quadrant to calculate coordinates. Creates corresponding Shape object 
-     * from shape text value, with newly calcuated coordinates and dimensions, and calls draw
-     * method of specific Shape. After all shapes have been drawn, calls StdDraw's show() 
-     * method to display entire frame.
+     * Registers the handlers that update graphics generation data structures from MIDI
+     * events. Called once by each constructor. Handlers run on the thread that reads MIDI
+     * events, and request a new frame from the graphics thread when anything changes.
      */
-    public void graphics() {
+    private void registerHandlers() {
+        events.onProgramChange((channel, program, timeStamp) -> {
+            // https://www.songstuff.com/recording/article/midi_message_format/
+            programs[channel] = program;
+        });
+        events.onNoteOn((channel, pitch, velocity, timeStamp) -> {
+            notes.noteOn(programs[channel], channel, pitch, velocity, timeStamp);
+            // notes restored by a seek were not received, so are not measured
+            if (!seeking) latency.noteOn(notes.getVersion(), timeStamp);
+            metrics.notesPlaying(notes.size());
+            // a NOTE_ON with velocity 0 stops the note
+            noteStateChanged(velocity > 0, channel, pitch, velocity);
+            renderLoop.requestFrame();
+        });
+        events.onNoteOff((channel, pitch, velocity, timeStamp) -> {
+            notes.noteOff(channel, pitch);
+            noteStateChanged(false, channel, pitch, velocity);
+            renderLoop.requestFrame();
+        });
+        events.onControlChange((channel, controller, value, timeStamp) -> {
+            renderLoop.requestFrame();
+        });
+        events.onMeta((type, timeStamp) -> {
+            // close the Sequencer when done
+            if (type == MIDI_END_OF_TRACK) close();
+        });
+    }
+
+    // get live performance counters
+    public EyeTunesMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Helper method - records a NoteStateChanged Flight Recorder event, if recording, after
+     * the notes NoteTable has changed. No event is created before Flight Recorder has been
+     * started.
+     *
+     * @param noteOn   true if the note started, false if it stopped
+     * @param channel  channel number
+     * @param pitch    key code number
+     * @param velocity velocity
+     */
+    private void noteStateChanged(boolean noteOn, int channel, int pitch, int velocity) {
+        if (!FlightRecorder.isInitialized()) return;
+        NoteStateChanged event = new NoteStateChanged();
+        if (!event.isEnabled()) return;
+        event.noteOn = noteOn;
+        event.channel = channel;
+        event.pitch = pitch;
+        event.velocity = velocity;
+        event.program = programs[channel];
+        event.playing = notes.size();
+        event.seeking = seeking;
+        event.commit();
+    }
+
+    /**
+     * Graphics generator. Gets the current in-memory mappings table once, so the whole frame
+     * uses the same mappings even if they are reloaded while drawing, copies the notes
+     * NoteTable, and builds the copy's draw commands. If the renderer keeps the last frame,
+     * only the region of the canvas where shapes appeared or disappeared (see DirtyRegion) is
+     * cleared and drawn again, and no frame is shown at all if no shape changed; otherwise the
+     * whole frame is drawn. Either way, the whole canvas is then shown. The time to build and
+     * to show the frame, and the bytes it allocated, are counted in metrics, and recorded as
+     * FrameBuilt and FramePresented Flight Recorder events while recording (no events are
+     * created before Flight Recorder has been started).
+     *
+     * @return true if a frame was shown, false if nothing changed
+     */
+    public boolean graphics() {
+        long allocated = EyeTunesMetrics.allocatedBytes();
+        boolean record = FlightRecorder.isInitialized();
+        FrameBuilt builtEvent = record ? new FrameBuilt() : null;
+        if (record) builtEvent.begin();
+        long begin = System.nanoTime();
+        MappingTable table = mappings.current();
+        int count = notes.snapshot(frameNotes);
+        frameList.clear();
+        addNotes(table, frameNotes, count, frameList);
+        if (!renderer.keepsFrame()) dirtyRegion.invalidate();
+        boolean partial = dirtyRegion.update(table, frameNotes, count, frameList);
+        // no shape changed, nothing to draw
+        if (partial && dirtyRegion.isEmpty()) return false;
+        double[] region = dirtyRegion.getRegion();
+        if (partial) {
+            renderer.clear(Color.BLACK, region[0], region[1], region[2], region[3]);
+            frameList.draw(renderer, region);
+        }
+        else {
+            renderer.clear(Color.BLACK);
+            frameList.draw(renderer);
+        }
+        long built = System.nanoTime();
+        if (record) builtEvent.end();
+
+        FramePresented presentedEvent = record ? new FramePresented() : null;
+        if (record) presentedEvent.begin();
+        renderer.show();
+        long shown = System.nanoTime();
+        if (record) presentedEvent.end();
+        frameNumber++;
+
+        if (allocated >= 0) allocated = EyeTunesMetrics.allocatedBytes() - allocated;
+        metrics.frameShown(built - begin, shown - built, count, allocated);
+        if (record && builtEvent.shouldCommit()) {
+            builtEvent.frame = frameNumber;
+            builtEvent.notes = count;
+            builtEvent.shapes = frameList.size();
+            builtEvent.commit();
+        }
+        if (record && presentedEvent.shouldCommit()) {
+            presentedEvent.frame = frameNumber;
+            presentedEvent.renderer = renderer.getClass().getSimpleName();
+            presentedEvent.commit();
+        }
+        return true;
+    }
+
+    /**
+     * Static helper method. Draws one frame of playing notes. First clears the renderer's
+     * canvas to default black background. Iterates through the packed notes and for each note,
+     * extracts pitch, velocity, program number, and channel number. Uses these values to look
+     * up the prebuilt Color, ShapeType, and Quadrant in the mappings table, so no database query
+     * is made while drawing. Uses velocity to calculate size, and pitch and quadrant to calculate
+     * coordinates. Adds a draw command for the ShapeType, with newly calcuated coordinates and
+     * dimensions, to the frame's DisplayList. Then draws the DisplayList, sorted by color and
+     * ShapeType so the pen color is set once per color. After all shapes have been drawn, calls
+     * the renderer's show() method to display entire frame. Used for frames rendered offline,
+     * each drawing thread passing its own frameList.
+     *
+     * @param renderer   Renderer to draw the frame with
+     * @param table      mappings of programvisuals and colornotes
+     * @param frameNotes packed playing notes
+     * @param count      number of playing notes
+     * @param frameList  DisplayList for the frame's draw commands
+     */
+    public static void drawFrame(Renderer renderer, MappingTable table, long[] frameNotes,
+                                 int count, DisplayList frameList) {
+        drawNotes(renderer, table, frameNotes, count, frameList);
+        // show all drawn shapes in frame
+        renderer.show();
+    }
+
+    /**
+     * Static helper method. Draws one frame of playing notes like drawFrame(), without
+     * showing it, so the live graphics thread can time drawing and showing apart.
+     *
+     * @param renderer   Renderer to draw the frame with
+     * @param table      mappings of programvisuals and colornotes
+     * @param frameNotes packed playing notes
+     * @param count      number of playing notes
+     * @param frameList  DisplayList for the frame's draw commands
+     */
+    public static void drawNotes(Renderer renderer, MappingTable table, long[] frameNotes,
+                                 int count, DisplayList frameList) {
         // clear screen to black background
-        StdDraw.enableDoubleBuffering();
-        StdDraw.clear(StdDraw.BLACK);
-
-        Connection connection = null; // to connect to database
-
-        // iterate through notes ArrayList
-        for (int i = 0; i < notes.size(); i++) {
-            // all values to be assigned to database query results
-            boolean perc = false; // percussion
-            String color = "";
-            String shape = "";
-            String quadrant = "";
-            int r = 0;
-            int g = 0;
-            int b = 0;
-
-            // note values to query database
-            Note note = notes.get(i);
-            int prog = note.getProg();
-            if (note.getChan() == 9) perc = true;
-            else perc = false;
-            int n = note.getPitch();
-
-            // query database (programvisuals) for color, shape, quadrant
-            String s = "select * from programvisuals where percussion = " + perc +
-            " and program = " + prog;
-            try {
-                connection = DriverManager.getConnection("jdbc:sqlite:mappings.db");
-                Statement statement = connection.createStatement();
-                ResultSet rs1 = statement.executeQuery(s);
-                while (rs1.next()) {
-                    // result set - program number, percussion, color, shape, quadrant
-                    int pr = rs1.getInt("program");
-                    boolean pe = rs1.getBoolean("percussion");
-                    color = rs1.getString("color");
-                    shape = rs1.getString("shape");
-                    quadrant = rs1.getString("quadrant");
-                }
-            }
-            catch (SQLException e) {
-                // if the error message is "out of memory",
-                // it probably means no database file is found
-                System.err.println(e.getMessage());
-            }
-            finally {
-                try {
-                    if (connection != null)
-                        connection.close();
-                }
-                catch (SQLException e) {
-                    // connection close failed.
-                    System.err.println(e.getMessage());
-                }
-            }
+        renderer.clear(Color.BLACK);
 
-            // query database (colornotes) for r, g, b
-            String s2 = "select * from colornotes where color = '" + color + "' and note = " + n;
-            try {
-                connection = DriverManager.getConnection("jdbc:sqlite:mappings.db");
-                Statement statement2 = connection.createStatement();
-                ResultSet rs2 = statement2.executeQuery(s2);
-                while (rs2.next()) {
-                    // result set - color, note, r, g, b
-                    String co = rs2.getString("color");
-                    int no = rs2.getInt("note");
-                    r = rs2.getInt("r");
-                    g = rs2.getInt("g");
-                    b = rs2.getInt("b");
-                }
-            }
-            catch (SQLException e) {
-                // if the error message is "out of memory",
-                // it probably means no database file is found
-                System.err.println(e.getMessage());
-            }
-            finally {
-                try {
-                    if (connection != null)
-                        connection.close();
-                }
-                catch (SQLException e) {
-                    // connection close failed.
-                    System.err.println(e.getMessage());
-                }
-            }
+        // build the frame's draw commands, then draw all commands, grouped by color and shape
+        frameList.clear();
+        addNotes(table, frameNotes, count, frameList);
+        frameList.draw(renderer);
+    }
 
-            // new color object from RGB in database, set pen color to draw shape
-            Color changed = new Color(r, g, b);
-            StdDraw.setPenColor(changed);
-
-            // calculate size
-            double length = (note.getVel() / MAXNUM * 2048 / (1360.0 * 4)); 
-            // divide by 4 to keep within buffer border, otherwise too big and goes off edges
-            // velocity 0-127, 2048 Hz
-
-            // calculate coordinates
-            // if no quadrant, then X and Y are proportional to pitch across entire canvas
-            double x = (double) n / MAXNUM; // default
-            double y = (double) n / MAXNUM; // default
-
-            // rescale coordinates by quadrant
-            if (quadrant.equals("A")) {
-                x = (160.0 / 1360.0) * x + 40.0 / 1360.0;
-                y = (120.0 / 765.0) * y + 600.0 / 765.0 + 22.5 / 765.0;
-            } else if (quadrant.equals("B")) {
-                x = (160.0 / 1360.0) * x + 40.0 / 1360.0;
-                y = (120.0 / 765.0) * y + 480.0 / 765.0 + 22.5 / 765.0;
-            } else if (quadrant.equals("C")) {
-                x = (320.0 / 1360.0) * x + 40.0 / 1360.0;
-                y = (240.0 / 765.0) * y + 240.0 / 765.0 + 22.5 / 765.0;
-            } else if (quadrant.equals("D")) {
-                x = (320.0 / 1360.0) * x + 40.0 / 1360.0;
-                y = (240.0 / 765.0) * y + 22.5 / 765.0;   
-            } else if (quadrant.equals("E")) {
-                x = (160.0 / 1360.0) * x + 160.0 / 1360.0 + 40.0 / 1360.0;
-                y = (240.0 / 765.0) * y + 480.0 / 765.0 + 22.5 / 765.0;
-            } else if (quadrant.equals("F")) {
-                x = (440.0 / 1360.0) * x + 320.0 / 1360.0 + 40.0 / 1360.0;
-                y = (480.0 / 765.0) * y + 240.0 / 765.0 + 22.5 / 765.0;
-            } else if (quadrant.equals("G")) {
-                x = (960.0 / 1360.0) * x + 320.0 / 1360.0 + 40.0 / 1360.0;
-                y = (240.0 / 765.0) * y + 22.5 / 765.0;
-            } else if (quadrant.equals("H")) {
-                x = (240.0 / 1360.0) * x + 800.0 / 1360.0 + 40.0 / 1360.0;
-                y = (480.0 / 765.0) * y + 240.0 / 765.0 + 22.5 / 765.0;
-            } else if (quadrant.equals("I")) {
-                x = (240.0 / 1360.0) * x + 1040.0 / 1360.0 + 40.0 / 1360.0;
-                y = (240.0 / 765.0) * y + 360.0 / 765.0 + 22.5 / 765.0;
-            } else if (quadrant.equals("J")) {
-                x = (120.0 / 1360.0) * x + 1040.0 / 1360.0 + 40.0 / 1360.0;
-                y = (240.0 / 765.0) * y + 240.0 / 765.0 + 22.5 / 765.0;
-            } else if (quadrant.equals("K")) {
-                x = (120.0 / 1360.0) * x + 1160.0 / 1360.0 + 40.0 / 1360.0;
-                y = (240.0 / 765.0) * y + 240.0 / 765.0 + 22.5 / 765.0;
-            }
+    /**
+     * Static helper method. Adds the draw commands of playing notes to a DisplayList, as
+     * drawNotes() does.
+     *
+     * @param table      mappings of programvisuals and colornotes
+     * @param frameNotes packed playing notes
+     * @param count      number of playing notes
+     * @param frameList  DisplayList to add the draw commands to
+     */
+    public static void addNotes(MappingTable table, long[] frameNotes, int count, DisplayList frameList) {
+        for (int i = 0; i < count; i++) {
+            addNote(table, frameNotes[i], frameList);
+        }
+    }
 
-            // create and draw corresponding Shape subclass object
-            if (shape.equals("square")) {
-                Square square = new Square(x, y, length);
-                square.draw();
-            }
-            else if (shape.equals("horizontal rectangle")) {
-                HorizontalRectangle hr = new HorizontalRectangle(x, y, length);
-                hr.draw();
-            }
-            else if (shape.equals("right diagonal rectangle")) {
-                RightDiagonalRectangle rdr = new RightDiagonalRectangle(x, y, length);
-                rdr.draw();
-            }
-            else if (shape.equals("left diagonal rectangle")) {
-                LeftDiagonalRectangle ldr = new LeftDiagonalRectangle(x, y, length);
-                ldr.draw();
-            }
-            else if (shape.equals("circle")) {
-                Circle c = new Circle(x, y, length);
-                c.draw();
-            }
-            else if (shape.equals("squiggle")) {
-                Squiggle sq = new Squiggle(x, y, length);
-                sq.draw();
+    /**
+     * Static helper method. Adds the draw command of one playing note to a DisplayList:
+     * extracts pitch, velocity, program number, and channel number, looks up the Color,
+     * ShapeType, and Quadrant in the mappings table, and calculates size from velocity and
+     * coordinates from pitch and quadrant. Notes whose program has no shape add nothing.
+     *
+     * @param table     mappings of programvisuals and colornotes
+     * @param note      packed playing note
+     * @param frameList DisplayList to add the draw command to
+     */
+    public static void addNote(MappingTable table, long note, DisplayList frameList) {
+        // note values to look up mappings
+        int prog = Note.getProg(note);
+        boolean perc = (Note.getChan(note) == 9); // percussion
+        int n = Note.getPitch(note);
+
+        // programs without a shape are not drawn
+        ShapeType shape = table.getShape(perc, prog);
+        if (shape == null) return;
+
+        // calculate size
+        double length = (Note.getVel(note) / MAXNUM * 2048 / (1360.0 * 4)); 
+        // divide by 4 to keep within buffer border, otherwise too big and goes off edges
+        // velocity 0-127, 2048 Hz
+
+        // calculate coordinates, proportional to pitch and rescaled by quadrant
+        Quadrant quadrant = table.getQuadrant(perc, prog);
+        double x = quadrant.getX(n);
+        double y = quadrant.getY(n);
+
+        // add command to draw corresponding Shape subclass in prebuilt color from mappings
+        frameList.add(shape, table.getColor(perc, prog, n), x, y, length);
+    }
+
+    /**
+     * Static helper method. Renders every frame of a MIDI file offline with a FrameExporter,
+     * without a Sequencer, sound, or a window, and writes the frames to a directory. The file
+     * is read with an SmfReader (no Sequence is created), frames are rendered in parallel,
+     * and progress is printed to stdout.
+     *
+     * @param filename the name of the MIDI file to render
+     * @param dir      directory to write frames to
+     * @param fps      frame rate (frames per second)
+     * @param format   PNG images or raw RGB
+     * @param threads  number of threads that render frames
+     */
+    private static void renderFrames(String filename, File dir, int fps, FrameExporter.Format format,
+                                     int threads) {
+        // no display is needed
+        System.setProperty("java.awt.headless", "true");
+        db = new CreateDB();
+        MappingTable table = loadMappings();
+        try {
+            long begin = System.nanoTime();
+            SmfReader reader = new SmfReader(filename);
+            FrameExporter exporter = new FrameExporter(reader.getEvents(), reader.getTempoMap());
+            int frames = exporter.export(dir, fps, format, table, threads, System.out);
+            double seconds = (System.nanoTime() - begin) / 1e9;
+            System.out.printf("Rendered %d frames (%.1f s of music) to %s in %.1f s (%.1f frames per second)%n",
+                              frames, exporter.getLength() / 1e6, dir, seconds, frames / seconds);
+        }
+        catch (InvalidMidiDataException e) {
+            System.err.println("Invalid MIDI file: " + filename);
+        }
+        catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Static helper method. Renders every frame of many MIDI files offline with a
+     * BatchExporter, several files at once, and writes the frames of each file to its own
+     * directory in dir, with a manifest of per-file timings, note counts, and peak
+     * polyphony. A file that fails does not stop the others.
+     *
+     * @param inputs  directories (every .mid file in them), MIDI files, or glob patterns
+     * @param dir     directory to write frames and the manifest to
+     * @param fps     frame rate (frames per second)
+     * @param format  PNG images or raw RGB
+     * @param threads number of threads that render frames, shared by all files
+     * @param jobs    number of files processed at once
+     */
+    private static void renderBatch(List<String> inputs, File dir, int fps, FrameExporter.Format format,
+                                    int threads, int jobs) {
+        // no display is needed
+        System.setProperty("java.awt.headless", "true");
+        try {
+            List<File> files = new ArrayList<File>();
+            for (String input : inputs) {
+                files.addAll(BatchExporter.findFiles(input));
             }
-            else if (shape.equals("sawtooth")) {
-                Sawtooth st = new Sawtooth(x, y, length);
-                st.draw();
+            if (files.isEmpty()) {
+                System.err.println("No MIDI files found");
+                return;
             }
+            db = new CreateDB();
+            MappingTable table = loadMappings();
+            long begin = System.nanoTime();
+            BatchExporter batch = new BatchExporter(fps, format, table, threads, jobs);
+            int failed = batch.export(files, dir, System.out);
+            System.out.printf("Processed %d files (%d failed) in %.1f s, manifest: %s%n", files.size(), failed,
+                              (System.nanoTime() - begin) / 1e9, new File(dir, BatchExporter.MANIFEST_FILENAME));
+        }
+        catch (IOException e) {
+            System.err.println(e.getMessage());
         }
-        // show all drawn shapes in frame
-        StdDraw.show();
     }
 
 
@@ -808,75 +1246,329 @@ public final class CombineClasses {
    /**
      * Tests this {@code CombineClasses} data type.
      *  To test a MIDI keyboard controller connected to a computer:
-     *     java -classpath ".:sqlite-jdbc-mappings.jar" CombineClasses [-p]
+     *     java -classpath ".:sqlite-jdbc-mappings.jar" CombineClasses [-p] [--fps <n>]
+     *          [--overflow <policy>] [--renderer <renderer>] [--latency] [--trace <file>]
+     *          [--channel-offsets <n,n,...>] [--reorder-window <ms>]
      *  To test a MIDI file:
-     *     java -classpath ".:sqlite-jdbc-mappings.jar" CombineClasses [-p] <midifile.mid>
+     *     java -classpath ".:sqlite-jdbc-mappings.jar" CombineClasses [-p] [--fps <n>]
+     *          [--overflow <policy>] [--renderer <renderer>] [--seek <seconds>] [--latency]
+     *          [--trace <file>] <midifile.mid>
+     *  To render the frames of a MIDI file offline (no window, no sound):
+     *     java -classpath ".:sqlite-jdbc-mappings.jar" CombineClasses --render-frames <dir>
+     *          [--fps <n>] [--format <format>] [--threads <n>] <midifile.mid>
+     *  To render the frames of many MIDI files offline:
+     *     java -classpath ".:sqlite-jdbc-mappings.jar" CombineClasses --batch <dir>
+     *          [--fps <n>] [--format <format>] [--threads <n>] [--jobs <n>]
+     *          <mididir | midifile.mid | glob>...
      * where:
      *     -classpath ".:sqlite-jdbc-mappings.jar" -  connects to the mappings database
-     * and the optional argument:
+     * and the optional arguments:
      *     -p -  indicates that the default JavaMIDI Synthesizer will 
      *           be used to play notes
      *       *** While this is an optional argument, it is recommended to run CombineClasses
      *       with -p to get the complete audiovisual experience, though the option to exclude
      *       -p opens use cases in which the user only wants to view the visualization. ***
+     *     --fps <n> - frame rate at which graphics are drawn (for example 30, 60, or 120),
+     *           60 by default
+     *     --overflow <policy> - what to do when MIDI messages arrive faster than they are
+     *           read: block, drop-oldest (default), or drop-newest
+     *     --renderer <renderer> - how frames are drawn: stddraw (default, StdDraw's window)
+     *           or java2d (Java2D window with page flipping, or an offscreen image when
+     *           there is no display)
+     *     --seek <seconds> - start playing the MIDI file at the given time instead of
+     *           its beginning (while playing, type , or . in the window to scrub back or
+     *           forward 5 seconds, or a digit 0 to 9 to jump to that tenth of the file)
+     *     --latency - print the percentiles of the time from each NOTE_ON received to the
+     *           first frame that shows it on exit (measured against the Sequencer's position
+     *           while a MIDI file plays; the printLatency operation of the EyeTunesMetrics
+     *           MXBean prints them at any time)
+     *     --trace <file> - write a line for each MIDI message read to the file, or to
+     *           stdout if the file is - (written by a background thread, so tracing does not
+     *           slow down playing; if it falls behind, lines are dropped and counted)
+     *     --channel-offsets <n,n,...> - number added to the channel of each message of each
+     *           keyboard controller, in the order they are listed on start (for example 0,1
+     *           so two controllers that both send on channel 0 are drawn differently)
+     *     --reorder-window <ms> - time messages from keyboard controllers are held so they
+     *           are merged in time stamp order, 2 by default (only with more than one)
+     *     --render-frames <dir> - render every frame of the MIDI file as fast as possible
+     *           and write them to the directory instead of playing the file
+     *     --format <format> - how rendered frames are written: png (default, one image per
+     *           frame) or rgb (one raw RGB file of all frames, frames.rgb)
+     *     --threads <n> - number of threads that render frames, the number of processors
+     *           by default (the frames are the same for any number of threads)
+     *     --batch <dir> - render every frame of each of the MIDI files, directories of MIDI
+     *           files, or glob patterns (for example songs/*.mid, quoted) given, writing the
+     *           frames of each file to its own directory in dir and a manifest
+     *           (manifest.csv) with per-file timings, note counts, and peak polyphony
+     *     --jobs <n> - number of files processed at once by --batch, 4 by default (all
+     *           files share the --threads rendering threads)
      * and the argument:
      *     <midifile.mid> - name of MIDI file`
      * 
      * Thus, the full usage is:
-     *     java -classpath ".:sqlite-jdbc-mappings.jar" CombineClasses [-p] [<midifile.mid>]
+     *     java -classpath ".:sqlite-jdbc-mappings.jar" CombineClasses [-p] [--fps <n>]
+     *          [--overflow <policy>] [--renderer <renderer>] [--seek <seconds>] [--latency]
+     *          [--trace <file>] [--channel-offsets <n,n,...>] [--reorder-window <ms>]
+     *          [<midifile.mid>]
+     *     java -classpath ".:sqlite-jdbc-mappings.jar" CombineClasses --render-frames <dir>
+     *          [--fps <n>] [--format <format>] [--threads <n>] <midifile.mid>
+     *     java -classpath ".:sqlite-jdbc-mappings.jar" CombineClasses --batch <dir>
+     *          [--fps <n>] [--format <format>] [--threads <n>] [--jobs <n>]
+     *          <mididir | midifile.mid | glob>...
      * 
+     * MIDI messages are read on the main thread, while graphics are drawn on the graphics
+     * thread at the given frame rate.
+     *
      * @param args the command-line arguments
      */
      public static void main(String args[]) {
-        String USAGE = "java -classpath \".:sqlite-jdbc-mappings.jar\" CombineClasses [-p] [<midifile.mid>]";
-        // java -classpath ".:sqlite-jdbc-mappings.jar" CombineClasses [-p] [<midifile.mid>]
+        String USAGE = "java -classpath \".:sqlite-jdbc-mappings.jar\" CombineClasses [-p] [--fps <n>] [--overflow <policy>] [--renderer <renderer>] [--seek <seconds>] [--latency] [--trace <file>] [--channel-offsets <n,n,...>] [--reorder-window <ms>] [<midifile.mid>]\n"
+                     + "java -classpath \".:sqlite-jdbc-mappings.jar\" CombineClasses --render-frames <dir> [--fps <n>] [--format <format>] [--threads <n>] <midifile.mid>\n"
+                     + "java -classpath \".:sqlite-jdbc-mappings.jar\" CombineClasses --batch <dir> [--fps <n>] [--format <format>] [--threads <n>] [--jobs <n>] <mididir | midifile.mid | glob>...";
+        // java -classpath ".:sqlite-jdbc-mappings.jar" CombineClasses [-p] [--fps <n>]
+        //      [--overflow <policy>] [--renderer <renderer>] [--seek <seconds>] [--latency]
+        //      [--trace <file>] [--channel-offsets <n,n,...>] [--reorder-window <ms>] [<midifile.mid>]
+        // java -classpath ".:sqlite-jdbc-mappings.jar" CombineClasses --render-frames <dir>
+        //      [--fps <n>] [--format <format>] [--threads <n>] <midifile.mid>
+        // java -classpath ".:sqlite-jdbc-mappings.jar" CombineClasses --batch <dir>
+        //      [--fps <n>] [--format <format>] [--threads <n>] [--jobs <n>] <mididir | midifile.mid | glob>...
         String PLAY  = "-p";
+        String FPS   = "--fps";
+        String OVERFLOW = "--overflow";
+        String RENDERER = "--renderer";
+        String STDDRAW  = "stddraw";
+        String JAVA2D   = "java2d";
+        String RENDER_FRAMES = "--render-frames";
+        String FORMAT   = "--format";
+        String THREADS  = "--threads";
+        String SEEK     = "--seek";
+        String BATCH    = "--batch";
+        String JOBS     = "--jobs";
+        String LATENCY  = "--latency";
+        String TRACE    = "--trace";
+        String CHANNEL_OFFSETS = "--channel-offsets";
+        String REORDER_WINDOW  = "--reorder-window";
         boolean VERBOSE = false;
+        boolean play = false;
+        int fps = DEFAULT_FPS;
+        MidiEventRing.Overflow overflow = MidiEventRing.Overflow.DROP_OLDEST;
+        String rendererName = STDDRAW;
+        String renderDir = null;
+        FrameExporter.Format format = FrameExporter.Format.PNG;
+        int threads = Runtime.getRuntime().availableProcessors();
+        double seek = 0;
+        String batchDir = null;
+        int jobs = DEFAULT_JOBS;
+        boolean printLatency = false;
+        String traceFile = null;
+        int[] channelOffsets = null;
+        double reorderWindow = REORDER_MICROS / 1000.0;
+        List<String> inputs = new ArrayList<String>(); // MIDI files (or directories or globs for --batch)
+        String filename = null;
         CombineClasses source = null;
 
         System.out.println("Welcome to EyeTunes!");
 
-        StdDraw.setCanvasSize(); // canvas by default is 512 x 512 pixels
-
-        // make this receiver listen for input from first MIDI input device found
-        // java -classpath ".:sqlite-jdbc-mappings.jar" CombineClasses
-        if (args.length == 0) {
-            source = new CombineClasses(VERBOSE, false);
-        }
-        else if (args.length == 1) {
-            // java -classpath ".:sqlite-jdbc-mappings.jar" CombineClasses -p
-            if (args[0].equals(PLAY))                        
-                source = new CombineClasses(VERBOSE, true);
-            // java -classpath ".:sqlite-jdbc-mappings.jar" CombineClasses <midifile.mid>
-            else {
-                source = new CombineClasses(args[0], VERBOSE, false);
-                source.start();
-                while (source.isActive()) {
-                    MidiMessage message = source.getMidiMessage();
+        // read arguments in any order
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals(PLAY))
+                play = true;
+            else if (args[i].equals(LATENCY))
+                printLatency = true;
+            else if (args[i].equals(FPS) && i + 1 < args.length) {
+                try {
+                    fps = Integer.parseInt(args[++i]);
+                }
+                catch (NumberFormatException e) {
+                    fps = 0;
+                }
+                if (fps <= 0) {
+                    System.out.println(USAGE);
+                    return;
                 }
             }
-        }
-        else if (args.length == 2) {
-            // java -classpath ".:sqlite-jdbc-mappings.jar" CombineClasses -p <midifile.mid>
-            if (args[0].equals(PLAY)) {
-                source = new CombineClasses(args[1], VERBOSE, true);
-                source.start();
-                while (source.isActive()) {
-                    MidiMessage message = source.getMidiMessage();
+            else if (args[i].equals(OVERFLOW) && i + 1 < args.length) {
+                try {
+                    // block, drop-oldest, or drop-newest
+                    overflow = MidiEventRing.Overflow.valueOf(args[++i].toUpperCase().replace('-', '_'));
+                }
+                catch (IllegalArgumentException e) {
+                    System.out.println(USAGE);
+                    return;
                 }
             }
-            // java -classpath ".:sqlite-jdbc-mappings.jar" CombineClasses <midifile.mid> -p
-            else if (args[1].equals(PLAY)) {
-                source = new CombineClasses(args[0], VERBOSE, true);
-                source.start();
-                while (source.isActive()) {
-                    MidiMessage message = source.getMidiMessage();
+            else if (args[i].equals(RENDERER) && i + 1 < args.length) {
+                rendererName = args[++i];
+                if (!rendererName.equals(STDDRAW) && !rendererName.equals(JAVA2D)) {
+                    System.out.println(USAGE);
+                    return;
                 }
             }
-            else
+            else if (args[i].equals(THREADS) && i + 1 < args.length) {
+                try {
+                    threads = Integer.parseInt(args[++i]);
+                }
+                catch (NumberFormatException e) {
+                    threads = 0;
+                }
+                if (threads <= 0) {
+                    System.out.println(USAGE);
+                    return;
+                }
+            }
+            else if (args[i].equals(SEEK) && i + 1 < args.length) {
+                try {
+                    seek = Double.parseDouble(args[++i]);
+                }
+                catch (NumberFormatException e) {
+                    seek = -1;
+                }
+                if (!(seek >= 0)) {
+                    System.out.println(USAGE);
+                    return;
+                }
+            }
+            else if (args[i].equals(JOBS) && i + 1 < args.length) {
+                try {
+                    jobs = Integer.parseInt(args[++i]);
+                }
+                catch (NumberFormatException e) {
+                    jobs = 0;
+                }
+                if (jobs <= 0) {
+                    System.out.println(USAGE);
+                    return;
+                }
+            }
+            else if (args[i].equals(CHANNEL_OFFSETS) && i + 1 < args.length) {
+                // one offset per keyboard controller, for example 0,1,2
+                String[] offsets = args[++i].split(",");
+                channelOffsets = new int[offsets.length];
+                try {
+                    for (int k = 0; k < offsets.length; k++) {
+                        channelOffsets[k] = Integer.parseInt(offsets[k].trim());
+                    }
+                }
+                catch (NumberFormatException e) {
+                    System.out.println(USAGE);
+                    return;
+                }
+            }
+            else if (args[i].equals(REORDER_WINDOW) && i + 1 < args.length) {
+                try {
+                    reorderWindow = Double.parseDouble(args[++i]);
+                }
+                catch (NumberFormatException e) {
+                    reorderWindow = -1;
+                }
+                if (!(reorderWindow >= 0)) {
+                    System.out.println(USAGE);
+                    return;
+                }
+            }
+            else if (args[i].equals(TRACE) && i + 1 < args.length)
+                traceFile = args[++i];
+            else if (args[i].equals(BATCH) && i + 1 < args.length)
+                batchDir = args[++i];
+            else if (args[i].equals(RENDER_FRAMES) && i + 1 < args.length)
+                renderDir = args[++i];
+            else if (args[i].equals(FORMAT) && i + 1 < args.length) {
+                try {
+                    // png or rgb
+                    format = FrameExporter.Format.valueOf(args[++i].toUpperCase());
+                }
+                catch (IllegalArgumentException e) {
+                    System.out.println(USAGE);
+                    return;
+                }
+            }
+            else if (!args[i].startsWith("-"))
+                inputs.add(args[i]);
+            else {
                 System.out.println(USAGE);
+                return;
+            }
         }
-        else
+
+        // java -classpath ".:sqlite-jdbc-mappings.jar" CombineClasses --batch <dir> <mididir>...
+        if (batchDir != null) {
+            if (inputs.isEmpty() || renderDir != null) {
+                System.out.println(USAGE);
+                return;
+            }
+            renderBatch(inputs, new File(batchDir), fps, format, threads, jobs);
+            return;
+        }
+
+        // one MIDI file at most
+        if (inputs.size() > 1) {
+            System.out.println(USAGE);
+            return;
+        }
+        if (!inputs.isEmpty()) filename = inputs.get(0);
+
+        // java -classpath ".:sqlite-jdbc-mappings.jar" CombineClasses --render-frames <dir> <midifile.mid>
+        if (renderDir != null) {
+            if (filename == null) {
+                System.out.println(USAGE);
+                return;
+            }
+            renderFrames(filename, new File(renderDir), fps, format, threads);
+            return;
+        }
+
+        // only a MIDI file can seek, and only keyboard controllers have channel offsets
+        if ((seek > 0 && filename == null) || (channelOffsets != null && filename != null)) {
             System.out.println(USAGE);
+            return;
+        }
+
+        // trace file, opened before anything starts playing
+        MidiTracer tracer = null;
+        if (traceFile != null) {
+            try {
+                tracer = MidiTracer.open(traceFile);
+            }
+            catch (IOException e) {
+                System.err.println(e.getMessage());
+                return;
+            }
+        }
+
+        // graphic is 16:9 aspect ratio, shapes are 1280:720 but buffered canvas is 1360:765
+        Renderer renderer;
+        if (rendererName.equals(JAVA2D))
+            renderer = new Java2DRenderer(WIDTH, HEIGHT, false);
+        else
+            renderer = new StdDrawRenderer(WIDTH, HEIGHT);
+
+        // make this receiver listen for input from every MIDI input device found
+        // java -classpath ".:sqlite-jdbc-mappings.jar" CombineClasses [-p]
+        if (filename == null) {
+            source = new CombineClasses(renderer, VERBOSE, play);
+            List<MidiInput> controllers = source.getInputs();
+            for (int i = 0; channelOffsets != null && i < channelOffsets.length && i < controllers.size(); i++) {
+                controllers.get(i).setChannelOffset(channelOffsets[i]);
+            }
+            source.setReorderWindow((long) (reorderWindow * 1000));
+            CombineClasses listened = source;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> listened.printInputs(System.out)));
+        }
+        // java -classpath ".:sqlite-jdbc-mappings.jar" CombineClasses [-p] <midifile.mid>
+        else
+            source = new CombineClasses(renderer, filename, VERBOSE, play);
+
+        source.setFrameRate(fps);
+        source.setOverflow(overflow);
+        if (tracer != null) source.setTracer(tracer);
+        if (seek > 0) source.seek((long) (seek * 1e6));
+        if (printLatency) {
+            CombineClasses measured = source;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> measured.printLatency(System.out)));
+        }
+        source.start();
+        while (source.isActive()) {
+            source.readMidiEvents();
+        }
     }
-}
\ No newline at end of file
+}
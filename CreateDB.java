@@ -3,10 +3,22 @@
  *  Execution:    java -classpath ".:sqlite-jdbc-mappings.jar" CreateDB
  *
  *  A CreateDB object creates a SQLite database, mappings.db, containing the two
- *  tables, programvisuals and colornotes. programvisuals contains the fields
- *  (program integer, percussion boolean, color text, shape text, quadrant text).
- *  colornotes contains the fields (color text, note integer, r integer, g 
- *  integer, b integer).
+ *  tables, programvisuals and colornotes, and the lookup tables colors, shapes,
+ *  and quadrants (id integer, name text). programvisuals contains the fields
+ *  (percussion integer, program integer, color_id integer, shape_id integer,
+ *  quadrant_id integer) with primary key (percussion, program). colornotes
+ *  contains the fields (color_id integer, note integer, r integer, g integer,
+ *  b integer) with primary key (color_id, note). Both are WITHOUT ROWID tables,
+ *  so a lookup is a search of the primary key. The views programvisualnames
+ *  and colornotenames show the same rows with color, shape, and quadrant text
+ *  for other tools that query the database. All rows are inserted in one
+ *  transaction using batched prepared statements, and the version of the
+ *  mappings is stored in the database (PRAGMA user_version). If the existing
+ *  database already has the current version, it is not rebuilt, so changes
+ *  made to the database while EyeTunes runs are kept. Increase VERSION
+ *  whenever the mappings below change. A database with the earlier text schema
+ *  (colors, shapes, and quadrants stored as text in programvisuals and
+ *  colornotes) is migrated to the new schema, keeping all of its mappings.
  * 
  *  By Morgan Teman
  *
@@ -14,297 +26,325 @@
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 
 // USAGE: java -classpath ".:sqlite-jdbc-mappings.jar" CreateDB
 public class CreateDB {
+    // mappings database file and its JDBC url
+    public static final String FILENAME = "mappings.db";
+    public static final String URL = "jdbc:sqlite:" + FILENAME;
+    // version of the mappings below, stored as PRAGMA user_version
+    public static final int VERSION = 2;
+
+    // names of the colors in colornotes
+    private static final String[] COLORS =
+    {"red", "orange", "yellow", "green", "teal", "blue", "purple", "pink", "white"};
 
     public CreateDB() {
         Connection connection = null;
         try {
             // create a database connection
-            connection = DriverManager.getConnection("jdbc:sqlite:mappings.db");
+            connection = DriverManager.getConnection(URL);
             Statement statement = connection.createStatement();
             statement.setQueryTimeout(30);  // set timeout to 30 sec.
 
+            // skip rebuilding if database is already current
+            ResultSet rs = statement.executeQuery("pragma user_version");
+            if (rs.next() && rs.getInt(1) == VERSION) return;
+
+            // rebuild in one transaction
+            connection.setAutoCommit(false);
+
+            // migrate earlier text schema, keeping its mappings
+            if (hasTextSchema(statement)) {
+                migrate(statement);
+                statement.executeUpdate("pragma user_version = " + VERSION);
+                connection.commit();
+                return;
+            }
+
             // new tables
-            statement.executeUpdate("drop table if exists programvisuals");
-            statement.executeUpdate("create table programvisuals (program integer, percussion boolean, color text, shape text, quadrant text);");
-            statement.executeUpdate("drop table if exists colornotes");
-            statement.executeUpdate("create table colornotes (color text, note integer, r integer, g integer, b integer);");
+            createTables(statement);
+            // ids are looked up by name, and a later row for the same key replaces an earlier one
+            PreparedStatement programs = connection.prepareStatement("insert or replace into programvisuals values(?, ?, "
+            + "(select id from colors where name = ?), (select id from shapes where name = ?), "
+            + "(select id from quadrants where name = ?));");
+            PreparedStatement colors = connection.prepareStatement("insert or replace into colornotes values("
+            + "(select id from colors where name = ?), ?, ?, ?, ?);");
 
             // programvisuals - prog, percussion, color, shape, quadrant
             // prog 0-5 (piano), perc false, red, square, C
             boolean percussion = false;
             for (int i = 0; i < 6; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'red', 'square', 'C');");
+                addProgram(programs, i, percussion, "red", "square", "C");
             }
             // prog 6 (harpsichord), perc false, orange, square, C
-            statement.executeUpdate("insert into programvisuals values(6, " + percussion + ", 'orange', 'square', 'C');");
+            addProgram(programs, 6, percussion, "orange", "square", "C");
             // prog 7 (clavinet), perc false, yellow, square, C
-            statement.executeUpdate("insert into programvisuals values(7, " + percussion + ", 'yellow', 'square', 'C');");
+            addProgram(programs, 7, percussion, "yellow", "square", "C");
             // prog 8-15 (chromatic percussion), perc false, yellow, circle, E
             for (int i = 8; i < 16; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'yellow', 'circle', 'E');");
+                addProgram(programs, i, percussion, "yellow", "circle", "E");
             }
             // prog 16-23 (organ), perc false, yellow, horizontal rectangle, C
             for (int i = 16; i < 24; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'yellow', 'horizontal rectangle', 'C');");
+                addProgram(programs, i, percussion, "yellow", "horizontal rectangle", "C");
             }
             // prog 24-25 (acoustic guitar), perc false, green, horizontal rectangle, H
             for (int i = 24; i < 26; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'green', 'horizontal rectangle', 'H');");
+                addProgram(programs, i, percussion, "green", "horizontal rectangle", "H");
             }
             // prog 26-30 (electric guitar), perc false, yellow, horizontal rectangle, F
             for (int i = 26; i < 31; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'yellow', 'horizontal rectangle', 'F');");
+                addProgram(programs, i, percussion, "yellow", "horizontal rectangle", "F");
             }
             // prog 31 (guitar harmonic), perc false, green, horizontal rectangle, H
-            statement.executeUpdate("insert into programvisuals values(31, " + percussion + ", 'green', 'horizontal rectangle', 'H');");
+            addProgram(programs, 31, percussion, "green", "horizontal rectangle", "H");
             // prog 32 (acoustic bass), perc false, green, squiggle, G
-            statement.executeUpdate("insert into programvisuals values(32, " + percussion + ", 'green', 'squiggle', 'G');");
+            addProgram(programs, 32, percussion, "green", "squiggle", "G");
             // prog 33-34 (electric bass), perc false, red, squiggle, G
             for (int i = 33; i < 35; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'red', 'squiggle', 'G');");
+                addProgram(programs, i, percussion, "red", "squiggle", "G");
             }            
             // prog 35 (fretless bass), perc false, green, squiggle, G
-            statement.executeUpdate("insert into programvisuals values(34, " + percussion + ", 'green', 'squiggle', 'G');");
+            addProgram(programs, 34, percussion, "green", "squiggle", "G");
             // prog 36-37 (slap bass), perc false, orange, squiggle, G
             for (int i = 36; i < 38; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'orange', 'squiggle', 'G');");
+                addProgram(programs, i, percussion, "orange", "squiggle", "G");
             }
             // prog 38-39 (synth bass), perc false, blue, squiggle, G
             for (int i = 38; i < 40; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'blue', 'squiggle', 'G');");
+                addProgram(programs, i, percussion, "blue", "squiggle", "G");
             }
             // prog 40-41 (violin/viola), perc false, pink, left diagonal rectangle, A
             for (int i = 40; i < 42; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'pink', 'left diagonal rectangle', 'A');");
+                addProgram(programs, i, percussion, "pink", "left diagonal rectangle", "A");
             }
             // prog 42 (cello), perc false, blue, left diagonal rectangle, H
-            statement.executeUpdate("insert into programvisuals values(42, " + percussion + ", 'blue', 'left diagonal rectangle', 'H');");
+            addProgram(programs, 42, percussion, "blue", "left diagonal rectangle", "H");
             // prog 43 (contrabass), perc false, green, left diagonal rectangle, G
-            statement.executeUpdate("insert into programvisuals values(43, " + percussion + ", 'green', 'left diagonal rectangle', 'G');");
+            addProgram(programs, 43, percussion, "green", "left diagonal rectangle", "G");
             // prog 44-46 (strings), perc false, yellow, left diagonal rectangle, H
             for (int i = 44; i < 47; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'yellow', 'left diagonal rectangle', 'H');");
+                addProgram(programs, i, percussion, "yellow", "left diagonal rectangle", "H");
             }
             // prog 47 (timpani), perc false, green, left diagonal rectangle, H
-            statement.executeUpdate("insert into programvisuals values(47, " + percussion + ", 'green', 'left diagonal rectangle', 'H');");
+            addProgram(programs, 47, percussion, "green", "left diagonal rectangle", "H");
             // prog 48-49 (string ensemble), perc false, yellow, left diagonal rectangle, H
             for (int i = 48; i < 50; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'yellow', 'left diagonal rectangle', 'H');");
+                addProgram(programs, i, percussion, "yellow", "left diagonal rectangle", "H");
             }
             // prog 50-51 (synth strings), perc false, pink, horizontal rectangle, H
             for (int i = 50; i < 52; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'pink', 'horizontal rectangle', 'H');");
+                addProgram(programs, i, percussion, "pink", "horizontal rectangle", "H");
             }
             // prog 52-54 (voice ensemble), perc false, purple, horizontal rectangle, B
             for (int i = 52; i < 56; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'purple', 'horizontal rectangle', 'B');");
+                addProgram(programs, i, percussion, "purple", "horizontal rectangle", "B");
             }
             // prog 55 (orchestra hit), perc false, white, circle, N
-            statement.executeUpdate("insert into programvisuals values(55, " + percussion + ", 'white', 'circle', 'N');");
+            addProgram(programs, 55, percussion, "white", "circle", "N");
             // prog 56 (trumpet), perc false, yellow, right diagonal rectangle, J
-            statement.executeUpdate("insert into programvisuals values(56, " + percussion + ", 'yellow', 'right diagonal rectangle', 'J');");
+            addProgram(programs, 56, percussion, "yellow", "right diagonal rectangle", "J");
             // prog 57 (trombone), perc false, blue, right diagonal rectangle, J
-            statement.executeUpdate("insert into programvisuals values(57, " + percussion + ", 'blue', 'right diagonal rectangle', 'J');");
+            addProgram(programs, 57, percussion, "blue", "right diagonal rectangle", "J");
             // prog 58 (tuba), perc false, green, right diagonal rectangle, J
-            statement.executeUpdate("insert into programvisuals values(58, " + percussion + ", 'green', 'right diagonal rectangle', 'J');");
+            addProgram(programs, 58, percussion, "green", "right diagonal rectangle", "J");
             // prog 59 (muted trumpet), perc false, yellow, right diagonal rectangle, J
-            statement.executeUpdate("insert into programvisuals values(59, " + percussion + ", 'yellow', 'right diagonal rectangle', 'J');");
+            addProgram(programs, 59, percussion, "yellow", "right diagonal rectangle", "J");
             // prog 60 (french horn), perc false, blue, right diagonal rectangle, J
-            statement.executeUpdate("insert into programvisuals values(60, " + percussion + ", 'blue', 'right diagonal rectangle', 'J');");
+            addProgram(programs, 60, percussion, "blue", "right diagonal rectangle", "J");
             // prog 61 (brass section), perc false, orange, right diagonal rectangle, J
-            statement.executeUpdate("insert into programvisuals values(61, " + percussion + ", 'orange', 'right diagonal rectangle', 'J');");
+            addProgram(programs, 61, percussion, "orange", "right diagonal rectangle", "J");
             // prog 62-63 (synth brass), perc false, teal, horizontal rectangle, J
             for (int i = 62; i < 64; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'teal', 'horizontal rectangle', 'J');");
+                addProgram(programs, i, percussion, "teal", "horizontal rectangle", "J");
             }
             // prog 64-67 (saxophone), perc false, blue, right diagonal rectangle, J
             for (int i = 64; i < 68; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'blue', 'right diagonal rectangle', 'J');");
+                addProgram(programs, i, percussion, "blue", "right diagonal rectangle", "J");
             }
             // prog 68 (oboe), perc false, green, right diagonal rectangle, J
-            statement.executeUpdate("insert into programvisuals values(68, " + percussion + ", 'green', 'right diagonal rectangle', 'J');");
+            addProgram(programs, 68, percussion, "green", "right diagonal rectangle", "J");
             // prog 69-70 (horn/bassoon), perc false, blue, right diagonal rectangle, J
             for (int i = 69; i < 71; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'blue', 'right diagonal rectangle', 'J');");
+                addProgram(programs, i, percussion, "blue", "right diagonal rectangle", "J");
             }
             // prog 71 (clarinet), perc false, purple, right diagonal rectangle, J
-            statement.executeUpdate("insert into programvisuals values(71, " + percussion + ", 'purple', 'right diagonal rectangle', 'J');");
+            addProgram(programs, 71, percussion, "purple", "right diagonal rectangle", "J");
             // prog 72-79 (pipes), perc false, pink, right diagonal rectangle, j
             for (int i = 72; i < 80; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'pink', 'right diagonal rectangle', 'J');");
+                addProgram(programs, i, percussion, "pink", "right diagonal rectangle", "J");
             }
             // prog 80-84 (warm synths), perc false, pink, horizontal rectangle, D
             for (int i = 80; i < 85; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'pink', 'horizontal rectangle', 'D');");
+                addProgram(programs, i, percussion, "pink", "horizontal rectangle", "D");
             }
             // prog 85 (voice synth), perc false, purple, horizontal rectangle, B
-            statement.executeUpdate("insert into programvisuals values(85, " + percussion + ", 'purple', 'horizontal rectangle', 'B');");
+            addProgram(programs, 85, percussion, "purple", "horizontal rectangle", "B");
             // prog 86 (fifths synth), perc false, pink, horizontal rectangle, D
-            statement.executeUpdate("insert into programvisuals values(86, " + percussion + ", 'pink', 'horizontal rectangle', 'D');");
+            addProgram(programs, 86, percussion, "pink", "horizontal rectangle", "D");
             // prog 87-88 (brass synths), perc false, teal, horizontal rectangle, I
             for (int i = 87; i < 89; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'teal', 'horizontal rectangle', 'I');");
+                addProgram(programs, i, percussion, "teal", "horizontal rectangle", "I");
             }
             // prog 89 (warm synth), perc false, pink, horizontal rectangle, I
-            statement.executeUpdate("insert into programvisuals values(89, " + percussion + ", 'pink', 'horizontal rectangle', 'I');");
+            addProgram(programs, 89, percussion, "pink", "horizontal rectangle", "I");
             // prog 90 (polysynth), perc false, purple, horizontal rectangle, I
-            statement.executeUpdate("insert into programvisuals values(90, " + percussion + ", 'purple', 'horizontal rectangle', 'I');");
+            addProgram(programs, 90, percussion, "purple", "horizontal rectangle", "I");
             // prog 91 (choir), perc false, purple, horizontal rectangle, B
-            statement.executeUpdate("insert into programvisuals values(91, " + percussion + ", 'purple', 'horizontal rectangle', 'B');");
+            addProgram(programs, 91, percussion, "purple", "horizontal rectangle", "B");
             // prog 92 (bowed synth), perc false, pink, horizontal rectangle, I
-            statement.executeUpdate("insert into programvisuals values(92, " + percussion + ", 'pink', 'horizontal rectangle', 'I');");
+            addProgram(programs, 92, percussion, "pink", "horizontal rectangle", "I");
             // prog 93 (metallic synth), perc false, teal, horizontal rectangle, I
-            statement.executeUpdate("insert into programvisuals values(93, " + percussion + ", 'teal', 'horizontal rectangle', 'I');");
+            addProgram(programs, 93, percussion, "teal", "horizontal rectangle", "I");
             // prog 94 (halo synth), perc false, pink, horizontal rectangle, I
-            statement.executeUpdate("insert into programvisuals values(94, " + percussion + ", 'pink', 'horizontal rectangle', 'I');");
+            addProgram(programs, 94, percussion, "pink", "horizontal rectangle", "I");
             // prog 95-100 (shh sound fx), perc false, white, horizontal rectangle, K
             for (int i = 95; i < 101; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'white', 'horizontal rectangle', 'K');");
+                addProgram(programs, i, percussion, "white", "horizontal rectangle", "K");
             }
             // prog 101-102 (voice sound fx), perc false, purple, horizontal rectangle, B
             for (int i = 101; i < 103; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'purple', 'horizontal rectangle', 'B');");
+                addProgram(programs, i, percussion, "purple", "horizontal rectangle", "B");
             }
             // prog 103 (sci-fi sound fx), perc false, teal, horizontal rectangle, I
-            statement.executeUpdate("insert into programvisuals values(103, " + percussion + ", 'teal', 'horizontal rectangle', 'I');");
+            addProgram(programs, 103, percussion, "teal", "horizontal rectangle", "I");
             // prog 104-108 (ethnic strings), perc false, green,left diagonal rectangle, H
             for (int i = 104; i < 109; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'green', 'left diagonal rectangle', 'H');");
+                addProgram(programs, i, percussion, "green", "left diagonal rectangle", "H");
             }
             // prog 109 (bagpipe), perc false, pink, right diagonal rectangle, J
-            statement.executeUpdate("insert into programvisuals values(109, " + percussion + ", 'pink', 'right diagonal rectangle', 'J');");
+            addProgram(programs, 109, percussion, "pink", "right diagonal rectangle", "J");
             // prog 110-111 (ethnic strings), perc false, green,left diagonal rectangle, H
             for (int i = 110; i < 112; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'green', 'left diagonal rectangle', 'H');");
+                addProgram(programs, i, percussion, "green", "left diagonal rectangle", "H");
             }
             // prog 112-113 (bells), perc false, yellow, circle, E
             for (int i = 112; i < 114; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'yellow', 'circle', 'E');");
+                addProgram(programs, i, percussion, "yellow", "circle", "E");
             }
             // prog 114-117 (drums), perc false, red, circle, E
             for (int i = 114; i < 118; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'red', 'circle', 'E');");
+                addProgram(programs, i, percussion, "red", "circle", "E");
             }
             // prog 118 (synth drum), perc false, purple, horizontal rectangle, E
-            statement.executeUpdate("insert into programvisuals values(118, " + percussion + ", 'purple', 'horizontal rectangle', 'E');");
+            addProgram(programs, 118, percussion, "purple", "horizontal rectangle", "E");
             // prog 119 (cymbal), perc false, orange, circle, E
-            statement.executeUpdate("insert into programvisuals values(119, " + percussion + ", 'orange', 'circle', 'E');");
+            addProgram(programs, 119, percussion, "orange", "circle", "E");
             // prog 120 (guitar fret noise), perc false, green, horizontal rectangle, F
-            statement.executeUpdate("insert into programvisuals values(120, " + percussion + ", 'green', 'horizontal rectangle', 'F');");
+            addProgram(programs, 120, percussion, "green", "horizontal rectangle", "F");
             // prog 121-122 (shh sound fx), perc false, white, square, I
             for (int i = 121; i < 123; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'white', 'square', 'I');");
+                addProgram(programs, i, percussion, "white", "square", "I");
             }
             // prog 123 (bird tweet), perc false, pink, right diagonal rectangle, J
-            statement.executeUpdate("insert into programvisuals values(123, " + percussion + ", 'pink', 'right diagonal rectangle', 'J');");
+            addProgram(programs, 123, percussion, "pink", "right diagonal rectangle", "J");
             // prog 124 (telephone ring), perc false, yellow, circle, J
-            statement.executeUpdate("insert into programvisuals values(120, " + percussion + ", 'yellow', 'circle', 'J');");
+            addProgram(programs, 120, percussion, "yellow", "circle", "J");
             // prog 125-127 (loud percussion sound fx), perc false, white, circle, D
             for (int i = 125; i < 128; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'white', 'circle', 'D');");
+                addProgram(programs, i, percussion, "white", "circle", "D");
             }
 
             // percussion (channel 9)
             percussion = true;
             // prog 33 (metronome click), perc true, red, circle, E
-            statement.executeUpdate("insert into programvisuals values(33, " + percussion + ", 'red', 'circle', 'E');");
+            addProgram(programs, 33, percussion, "red", "circle", "E");
             // prog 34 (metronome bell), perc true, yellow, circle, J
-            statement.executeUpdate("insert into programvisuals values(34, " + percussion + ", 'yellow', 'circle', 'J');");
+            addProgram(programs, 34, percussion, "yellow", "circle", "J");
             // prog 35-37 (drums), perc true, red, circle, E
             for (int i = 35; i < 38; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'red', 'circle', 'E');");
+                addProgram(programs, i, percussion, "red", "circle", "E");
             }
             // prog 38 (acoustic snare), perc true, white, square, K
-            statement.executeUpdate("insert into programvisuals values(38, " + percussion + ", 'white', 'square', 'K');");
+            addProgram(programs, 38, percussion, "white", "square", "K");
             // prog 39 (hand clap), perc true, white, circle, E
-            statement.executeUpdate("insert into programvisuals values(39, " + percussion + ", 'white', 'circle', 'E');");
+            addProgram(programs, 39, percussion, "white", "circle", "E");
             // prog 40 (electric snare), perc true, white, square, K
-            statement.executeUpdate("insert into programvisuals values(40, " + percussion + ", 'white', 'square', 'K');");
+            addProgram(programs, 40, percussion, "white", "square", "K");
             // prog 41 (low floor tom), perc true, red, circle, E
-            statement.executeUpdate("insert into programvisuals values(41, " + percussion + ", 'red', 'circle', 'E');");
+            addProgram(programs, 41, percussion, "red", "circle", "E");
             // prog 42 (closed hi-hat), perc true, white, square, K
-            statement.executeUpdate("insert into programvisuals values(42, " + percussion + ", 'white', 'square', 'K');");
+            addProgram(programs, 42, percussion, "white", "square", "K");
             // prog 43 (high floor tom), perc true, red, circle, E
-            statement.executeUpdate("insert into programvisuals values(43, " + percussion + ", 'red', 'circle', 'E');");
+            addProgram(programs, 43, percussion, "red", "circle", "E");
             // prog 44 (pedal hi-hat), perc true, white, square, K
-            statement.executeUpdate("insert into programvisuals values(44, " + percussion + ", 'white', 'square', 'K');");
+            addProgram(programs, 44, percussion, "white", "square", "K");
             // prog 45 (low tom), perc true, red, circle, E
-            statement.executeUpdate("insert into programvisuals values(45, " + percussion + ", 'red', 'circle' ,'E');");
+            addProgram(programs, 45, percussion, "red", "circle", "E");
             // prog 46 (open hi-hat), perc true, white, square, K
-            statement.executeUpdate("insert into programvisuals values(46, " + percussion + ", 'white', 'square', 'K');");
+            addProgram(programs, 46, percussion, "white", "square", "K");
             // prog 47-48 (low- & hi-mid tom), perc true, red, circle, E
             for (int i = 47; i < 49; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'red', 'circle', 'E');");
+                addProgram(programs, i, percussion, "red", "circle", "E");
             }
             // prog 49 (crash cymbal 1), perc true, orange, circle, K
-            statement.executeUpdate("insert into programvisuals values(49, " + percussion + ", 'orange', 'circle', 'K');");
+            addProgram(programs, 49, percussion, "orange", "circle", "K");
             // prog 50 (high tom), perc true, red, circle, E
-            statement.executeUpdate("insert into programvisuals values(50, " + percussion + ", 'red', 'circle', 'E');");
+            addProgram(programs, 50, percussion, "red", "circle", "E");
             // prog 51-52 (ride cymbal 1 & chinese cymbal), perc true, orange, circle, K
             for (int i = 51; i < 53; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'orange', 'circle', 'K');");
+                addProgram(programs, i, percussion, "orange", "circle", "K");
             }
             // prog 53 (ride bell), perc true, white, square, J
-            statement.executeUpdate("insert into programvisuals values(53, " + percussion + ", 'white', 'square', 'J');");
+            addProgram(programs, 53, percussion, "white", "square", "J");
             // prog 54 (tambourine), perc true, white, square, K
-            statement.executeUpdate("insert into programvisuals values(54, " + percussion + ", 'white', 'square', 'K');");
+            addProgram(programs, 54, percussion, "white", "square", "K");
             // prog 55 (splash cymbal), perc true, orange, circle, K
-            statement.executeUpdate("insert into programvisuals values(55, " + percussion + ", 'orange', 'circle', 'K');");
+            addProgram(programs, 55, percussion, "orange", "circle", "K");
             // prog 56 (cowbell), perc true, orange, circle, J
-            statement.executeUpdate("insert into programvisuals values(56, " + percussion + ", 'yellow', 'circle', 'J');");
+            addProgram(programs, 56, percussion, "yellow", "circle", "J");
             // prog 57 (crash cymbal 2), perc true, orange, circle, K
-            statement.executeUpdate("insert into programvisuals values(57, " + percussion + ", 'orange', 'circle', 'K');");
+            addProgram(programs, 57, percussion, "orange", "circle", "K");
             // prog 58 (vibraslap), perc true, red, sawtooth, E
-            statement.executeUpdate("insert into programvisuals values(58, " + percussion + ", 'red', 'sawtooth', 'E');");
+            addProgram(programs, 58, percussion, "red", "sawtooth", "E");
             // prog 59 (ride cymbal), perc true, white, square, K
-            statement.executeUpdate("insert into programvisuals values(59, " + percussion + ", 'white', 'square', 'K');");
+            addProgram(programs, 59, percussion, "white", "square", "K");
             // prog 60-64 (bongos & congas), perc true, orange, circle, E
             for (int i = 60; i < 65; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'orange', 'circle', 'E');");
+                addProgram(programs, i, percussion, "orange", "circle", "E");
             }
             // prog 65-66 (timbales), perc true, red, circle, E
             for (int i = 65; i < 67; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'red', 'circle', 'E');");
+                addProgram(programs, i, percussion, "red", "circle", "E");
             }
             // prog 67-68 (agogos), perc true, yellow, circle, E
             for (int i = 67; i < 69; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'yellow', 'circle', 'E');");
+                addProgram(programs, i, percussion, "yellow", "circle", "E");
             }
             // prog 69-70 (cabasa & maracas), perc true, white, square, K
             for (int i = 69; i < 71; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'white', 'square', 'K');");
+                addProgram(programs, i, percussion, "white", "square", "K");
             }
             // prog 71-72 (whistles), perc true, pink, right diagonal rectangle, J
             for (int i = 71; i < 73; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'pink', 'right diagonal rectangle', 'J');");
+                addProgram(programs, i, percussion, "pink", "right diagonal rectangle", "J");
             }
             // prog 73-74 (guiros), perc true, red, sawtooth, E
             for (int i = 73; i < 75; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'red', 'sawtooth', 'E');");
+                addProgram(programs, i, percussion, "red", "sawtooth", "E");
             }
             // prog 75-77 (claves & wood blocks), perc true, red, circle, E
             for (int i = 75; i < 78; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'red', 'circle', 'E');");
+                addProgram(programs, i, percussion, "red", "circle", "E");
             }
             // prog 78-79 (cuicas), perc true, blue, right diagonal rectangle, E
             for (int i = 78; i < 80; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'blue', 'right diagonal rectangle', 'E');");
+                addProgram(programs, i, percussion, "blue", "right diagonal rectangle", "E");
             }
             // prog 80-81 (triangles), perc true, green, circle, J
             for (int i = 80; i < 82; i++) {
-                statement.executeUpdate("insert into programvisuals values(" + i + ", " + percussion + ", 'green', 'circle', 'J');");
+                addProgram(programs, i, percussion, "green", "circle", "J");
             }
 
             // colornotes - color, note, r, g, b
             // red
             for (int note = 0; note < 128; note++) {
-                String color = "'red'";
+                String color = "red";
                 int r;
                 int g; 
                 int b;
@@ -318,11 +358,11 @@ public class CreateDB {
                     g = 4 * (note - 63) - 1;
                     b = 4 * (note - 63) - 1;
                 }
-                statement.executeUpdate("insert into colornotes values(" + color + ", " + note + ", " + r + ", " + g + ", " + b + ");");
+                addColor(colors, color, note, r, g, b);
             }
             // orange
             for (int note = 0; note < 128; note++) {
-                String color = "'orange'";
+                String color = "orange";
                 int r;
                 int g; 
                 int b;
@@ -336,11 +376,11 @@ public class CreateDB {
                     g = 2 * (note - 64) + 128;
                     b = 4 * (note - 63) - 1;
                 }
-                statement.executeUpdate("insert into colornotes values(" + color + ", " + note + ", " + r + ", " + g + ", " + b + ");");
+                addColor(colors, color, note, r, g, b);
             }
             // yellow
             for (int note = 0; note < 128; note++) {
-                String color = "'yellow'"; 
+                String color = "yellow"; 
                 int r;
                 int g; 
                 int b;
@@ -354,11 +394,11 @@ public class CreateDB {
                     g = 255;
                     b = 4 * (note - 63) - 1;
                 }
-                statement.executeUpdate("insert into colornotes values(" + color + ", " + note + ", " + r + ", " + g + ", " + b + ");");
+                addColor(colors, color, note, r, g, b);
             }
             // green
             for (int note = 0; note < 128; note++) {
-                String color = "'green'"; 
+                String color = "green"; 
                 int r;
                 int g; 
                 int b;
@@ -372,11 +412,11 @@ public class CreateDB {
                     g = 255;
                     b = 4 * (note - 63) - 1;
                 }
-                statement.executeUpdate("insert into colornotes values(" + color + ", " + note + ", " + r + ", " + g + ", " + b + ");");
+                addColor(colors, color, note, r, g, b);
             }
             // teal
             for (int note = 0; note < 128; note++) {
-                String color = "'teal'";
+                String color = "teal";
                 int r;
                 int g; 
                 int b;
@@ -390,11 +430,11 @@ public class CreateDB {
                     g = 255;
                     b = 255;
                 }
-                statement.executeUpdate("insert into colornotes values(" + color + ", " + note + ", " + r + ", " + g + ", " + b + ");");
+                addColor(colors, color, note, r, g, b);
             }
             // blue
             for (int note = 0; note < 128; note++) {
-                String color = "'blue'";
+                String color = "blue";
                 int r;
                 int g; 
                 int b;
@@ -408,11 +448,11 @@ public class CreateDB {
                     g = 4 * (note - 63) - 1;
                     b = 255;
                 }
-                statement.executeUpdate("insert into colornotes values(" + color + ", " + note + ", " + r + ", " + g + ", " + b + ");");
+                addColor(colors, color, note, r, g, b);
             }
             // purple
             for (int note = 0; note < 128; note++) {
-                String color = "'purple'";
+                String color = "purple";
                 int r;
                 int g; 
                 int b;
@@ -426,11 +466,11 @@ public class CreateDB {
                     g = 4 * (note - 63) - 1;
                     b = 255;
                 }
-                statement.executeUpdate("insert into colornotes values(" + color + ", " + note + ", " + r + ", " + g + ", " + b + ");");
+                addColor(colors, color, note, r, g, b);
             }
             // pink
             for (int note = 0; note < 128; note++) {
-                String color = "'pink'";
+                String color = "pink";
                 int r;
                 int g; 
                 int b;
@@ -444,21 +484,35 @@ public class CreateDB {
                     g = 4 * (note - 63) - 1;
                     b = 2 * (note - 64) + 128;
                 }
-                statement.executeUpdate("insert into colornotes values(" + color + ", " + note + ", " + r + ", " + g + ", " + b + ");");
+                addColor(colors, color, note, r, g, b);
             }
             // white
             for (int note = 0; note < 128; note++) {
-                String color = "'white'";
+                String color = "white";
                 int r = 2 * note;
                 int g = 2 * note; 
                 int b = 2 * note;
-                statement.executeUpdate("insert into colornotes values(" + color + ", " + note + ", " + r + ", " + g + ", " + b + ");");
+                addColor(colors, color, note, r, g, b);
             }
+
+            // insert all rows, mark database as current
+            programs.executeBatch();
+            colors.executeBatch();
+            statement.executeUpdate("pragma user_version = " + VERSION);
+            connection.commit();
         }
         // exception handling
         catch (SQLException e) {
             // "out of memory" error message means no db file found
             System.err.println(e.getMessage());
+            try {
+                if (connection != null && !connection.getAutoCommit())
+                    connection.rollback();
+            }
+            catch (SQLException e2) {
+                // rollback failed
+                System.err.println(e2.getMessage());
+            }
         }
         finally {
             try {
@@ -472,7 +526,101 @@ public class CreateDB {
         }
     }
 
-    public static void main(String[] args) {
+    // drop all tables and views, create new tables and fill the lookup tables
+    private static void createTables(Statement statement) throws SQLException {
+        statement.executeUpdate("drop view if exists programvisualnames");
+        statement.executeUpdate("drop view if exists colornotenames");
+        statement.executeUpdate("drop table if exists programvisuals");
+        statement.executeUpdate("drop table if exists colornotes");
+        statement.executeUpdate("drop table if exists colors");
+        statement.executeUpdate("drop table if exists shapes");
+        statement.executeUpdate("drop table if exists quadrants");
+
+        // lookup tables
+        statement.executeUpdate("create table colors (id integer primary key, name text not null unique);");
+        statement.executeUpdate("create table shapes (id integer primary key, name text not null unique);");
+        statement.executeUpdate("create table quadrants (id integer primary key, name text not null unique);");
+        for (String color : COLORS) {
+            statement.executeUpdate("insert into colors (name) values('" + color + "');");
+        }
+        for (ShapeType shape : ShapeType.values()) {
+            statement.executeUpdate("insert into shapes (name) values('" + shape.getText() + "');");
+        }
+        for (Quadrant quadrant : Quadrant.values()) {
+            statement.executeUpdate("insert into quadrants (name) values('" + quadrant.name() + "');");
+        }
+
+        // mapping tables
+        statement.executeUpdate("create table programvisuals (percussion integer not null, program integer not null, "
+        + "color_id integer not null references colors(id), shape_id integer not null references shapes(id), "
+        + "quadrant_id integer not null references quadrants(id), primary key (percussion, program)) without rowid;");
+        statement.executeUpdate("create table colornotes (color_id integer not null references colors(id), "
+        + "note integer not null, r integer, g integer, b integer, primary key (color_id, note)) without rowid;");
 
+        // views with names, for other tools that query the database
+        statement.executeUpdate("create view programvisualnames as select p.program, p.percussion, "
+        + "c.name as color, s.name as shape, q.name as quadrant from programvisuals p "
+        + "join colors c on c.id = p.color_id join shapes s on s.id = p.shape_id "
+        + "join quadrants q on q.id = p.quadrant_id;");
+        statement.executeUpdate("create view colornotenames as select c.name as color, n.note, n.r, n.g, n.b "
+        + "from colornotes n join colors c on c.id = n.color_id;");
+    }
+
+    // check if programvisuals has the earlier text schema
+    private static boolean hasTextSchema(Statement statement) throws SQLException {
+        ResultSet rs = statement.executeQuery(
+        "select count(*) from pragma_table_info('programvisuals') where name = 'color'");
+        return rs.next() && rs.getInt(1) > 0;
+    }
+
+    // migrate the earlier text schema to the new tables, keeping all rows
+    private static void migrate(Statement statement) throws SQLException {
+        statement.executeUpdate("alter table programvisuals rename to programvisuals_text");
+        statement.executeUpdate("alter table colornotes rename to colornotes_text");
+        createTables(statement);
+
+        // keep any color, shape, or quadrant names that are not in the lookup tables
+        statement.executeUpdate("insert or ignore into colors (name) select color from colornotes_text "
+        + "where color is not null union select color from programvisuals_text where color is not null;");
+        statement.executeUpdate("insert or ignore into shapes (name) "
+        + "select shape from programvisuals_text where shape is not null;");
+        statement.executeUpdate("insert or ignore into quadrants (name) "
+        + "select quadrant from programvisuals_text where quadrant is not null;");
+
+        // copy rows in insertion order, so a later row for the same key replaces an earlier one
+        statement.executeUpdate("insert or replace into programvisuals select p.percussion, p.program, "
+        + "c.id, s.id, q.id from programvisuals_text p join colors c on c.name = p.color "
+        + "join shapes s on s.name = p.shape join quadrants q on q.name = p.quadrant order by p.rowid;");
+        statement.executeUpdate("insert or replace into colornotes select c.id, n.note, n.r, n.g, n.b "
+        + "from colornotes_text n join colors c on c.name = n.color order by n.rowid;");
+
+        statement.executeUpdate("drop table programvisuals_text");
+        statement.executeUpdate("drop table colornotes_text");
+    }
+
+    // add a programvisuals row to the batch
+    private static void addProgram(PreparedStatement programs, int program, boolean percussion,
+                                   String color, String shape, String quadrant) throws SQLException {
+        programs.setBoolean(1, percussion);
+        programs.setInt(2, program);
+        programs.setString(3, color);
+        programs.setString(4, shape);
+        programs.setString(5, quadrant);
+        programs.addBatch();
+    }
+
+    // add a colornotes row to the batch
+    private static void addColor(PreparedStatement colors, String color, int note,
+                                 int r, int g, int b) throws SQLException {
+        colors.setString(1, color);
+        colors.setInt(2, note);
+        colors.setInt(3, r);
+        colors.setInt(4, g);
+        colors.setInt(5, b);
+        colors.addBatch();
+    }
+
+    public static void main(String[] args) {
+        new CreateDB();
     }
 }
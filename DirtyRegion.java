@@ -0,0 +1,145 @@
+/* *****************************************************************************
+ *  Compilation:  javac DirtyRegion.java
+ *
+ *  A DirtyRegion finds the part of the canvas that changes from one frame to
+ *  the next, so the graphics thread can redraw only that part. It keeps the
+ *  playing notes of the last frame drawn, sorted, and compares them with the
+ *  notes of the new frame: the notes that appeared or disappeared are mapped
+ *  to their draw commands, and the region is the union of their bounding
+ *  boxes. The region is then widened until every shape of the new frame that
+ *  touches it lies inside it, and snapped to whole pixels, so that painting the
+ *  region black and drawing the shapes that touch it gives the same pixels as
+ *  drawing the whole frame.
+ *
+ *  The whole canvas is drawn instead for the first frame, after invalidate(),
+ *  when the mappings were reloaded, and when the region would cover more than
+ *  MAX_AREA of the canvas.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import java.util.Arrays;
+
+public final class DirtyRegion {
+    // constants
+    private static final double PAD_PIXELS = 3;   // padding for antialiased edges and lines
+    private static final double MAX_AREA = 0.5;   // largest region, as a fraction of the canvas
+
+    // instance variables
+    private final int width;  // canvas width in pixels
+    private final int height; // canvas height in pixels
+    private long[] shown;     // sorted notes of the last frame drawn
+    private long[] sorted;    // sorted notes of the new frame
+    private int shownCount = -1; // number of notes of the last frame drawn, -1 if none
+    private MappingTable shownTable; // mappings of the last frame drawn
+    private final DisplayList changed; // draw commands of notes that appeared or disappeared
+    private final double[] region = new double[4]; // x0, y0, x1, y1
+
+    /**
+     * Creates a DirtyRegion for a canvas, with no frame drawn yet.
+     *
+     * @param width    canvas width in pixels
+     * @param height   canvas height in pixels
+     * @param capacity max number of notes in a frame
+     */
+    public DirtyRegion(int width, int height, int capacity) {
+        this.width = width;
+        this.height = height;
+        shown = new long[capacity];
+        sorted = new long[capacity];
+        changed = new DisplayList(capacity);
+        changed.setPadding(getPaddingX(), getPaddingY());
+    }
+
+    // getters
+    // get padding of bounding boxes for this canvas, in coordinates
+    public double getPaddingX() {
+        return PAD_PIXELS / width;
+    }
+
+    public double getPaddingY() {
+        return PAD_PIXELS / height;
+    }
+
+    // get region that changed, as x0, y0, x1, y1 (valid after update() returned true)
+    public double[] getRegion() {
+        return region;
+    }
+
+    // check if nothing changed (valid after update() returned true)
+    public boolean isEmpty() {
+        return region[0] > region[2];
+    }
+
+    // draw the whole canvas for the next frame
+    public void invalidate() {
+        shownCount = -1;
+        shownTable = null;
+    }
+
+    /**
+     * Compares the notes of a new frame with those of the last frame drawn, and
+     * remembers them as the last frame drawn.
+     *
+     * @param table     mappings the new frame is drawn with
+     * @param notes     packed playing notes of the new frame
+     * @param count     number of playing notes
+     * @param frameList draw commands of the new frame, with this region's padding
+     * @return true if only getRegion() (empty if nothing changed) must be redrawn,
+     *         false if the whole canvas must be drawn
+     */
+    public boolean update(MappingTable table, long[] notes, int count, DisplayList frameList) {
+        System.arraycopy(notes, 0, sorted, 0, count);
+        Arrays.sort(sorted, 0, count);
+        boolean partial = (shownCount >= 0 && table == shownTable);
+
+        // notes in only one of the two sorted frames appeared or disappeared
+        if (partial) {
+            changed.clear();
+            int i = 0, j = 0;
+            while (i < shownCount || j < count) {
+                if (j == count || (i < shownCount && shown[i] < sorted[j]))
+                    CombineClasses.addNote(table, shown[i++], changed);
+                else if (i == shownCount || sorted[j] < shown[i])
+                    CombineClasses.addNote(table, sorted[j++], changed);
+                else {
+                    i++;
+                    j++;
+                }
+            }
+        }
+
+        // the new frame becomes the last frame drawn
+        long[] swap = shown;
+        shown = sorted;
+        sorted = swap;
+        shownCount = count;
+        shownTable = table;
+        if (!partial) return false;
+
+        region[0] = region[1] = Double.POSITIVE_INFINITY;
+        region[2] = region[3] = Double.NEGATIVE_INFINITY;
+        changed.union(region);
+        if (isEmpty()) return true;
+        do {
+            snap();
+        } while (frameList.grow(region));
+
+        // shapes may reach past the edges, but only the canvas is drawn
+        region[0] = Math.max(region[0], 0);
+        region[1] = Math.max(region[1], 0);
+        region[2] = Math.min(region[2], 1);
+        region[3] = Math.min(region[3], 1);
+        return (region[2] - region[0]) * (region[3] - region[1]) <= MAX_AREA;
+    }
+
+    // widen the region to whole pixels (never narrowing it by rounding)
+    private void snap() {
+        region[0] = Math.min(region[0], Math.floor(region[0] * width) / width);
+        region[2] = Math.max(region[2], Math.ceil(region[2] * width) / width);
+        // pixel rows count down from the top
+        region[1] = Math.min(region[1], 1 - Math.ceil((1 - region[1]) * height) / height);
+        region[3] = Math.max(region[3], 1 - Math.floor((1 - region[3]) * height) / height);
+    }
+}
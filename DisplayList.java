@@ -0,0 +1,213 @@
+/* *****************************************************************************
+ *  Compilation:  javac DisplayList.java
+ *
+ *  A DisplayList holds the draw commands of one frame: the ShapeType, Color,
+ *  central coordinate, and length of every shape. graphics() fills it while it
+ *  looks up the mappings of the playing notes, then draws it all at once.
+ *  Before drawing, the commands are sorted by color (packed RGB) and then by
+ *  ShapeType, so the pen color is set once for each color instead of once for
+ *  each shape, and shapes of the same type are drawn one after another. Each
+ *  command's sort key is a long (RGB, ShapeType, and command number), so the
+ *  sort is a primitive sort. All arrays are allocated once and reused for
+ *  every frame, so building and drawing a frame creates no objects.
+ *
+ *  To redraw only a region of a frame, the bounding box of each command
+ *  (widened by a padding for antialiased edges and lines) is measured when
+ *  first needed. grow() widens a region until every command that touches it
+ *  lies inside it, so that drawing just the commands that touch the region
+ *  changes no pixel outside of it.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import java.awt.Color;
+import java.util.Arrays;
+
+public final class DisplayList {
+    // bits of a sort key, from least significant:
+    //      0-11  command number (0-4095)
+    //      12-15 ShapeType ordinal
+    //      16-39 packed RGB
+    private static final int SHAPE_SHIFT = 12;
+    private static final int RGB_SHIFT = 16;
+    private static final int INDEX_MASK = (1 << SHAPE_SHIFT) - 1;
+    private static final ShapeType[] SHAPES = ShapeType.values();
+    // constants
+    public static final int MAX_CAPACITY = INDEX_MASK + 1; // max number of commands
+
+    // instance variables, indexed by command number
+    private final long[] keys;       // sort keys
+    private final Color[] colors;    // pen colors
+    private final double[] xs;       // x-coordinates of centers
+    private final double[] ys;       // y-coordinates of centers
+    private final double[] lengths;  // sizes
+    private final ShapeType[] shapes; // types
+    private int size;                // number of commands
+    // bounding boxes, padded, of the first bounded commands
+    private final double[] x0s, y0s, x1s, y1s;
+    private int bounded;
+    private double padX, padY;       // padding of bounding boxes
+    private final double[] box = new double[4]; // scratch bounding box
+
+    // constructor
+    public DisplayList(int capacity) {
+        if (capacity <= 0 || capacity > MAX_CAPACITY)
+            throw new IllegalArgumentException("Capacity must be 1 to " + MAX_CAPACITY + ": " + capacity);
+        keys = new long[capacity];
+        colors = new Color[capacity];
+        xs = new double[capacity];
+        ys = new double[capacity];
+        lengths = new double[capacity];
+        shapes = new ShapeType[capacity];
+        x0s = new double[capacity];
+        y0s = new double[capacity];
+        x1s = new double[capacity];
+        y1s = new double[capacity];
+    }
+
+    // set padding added to each side of the bounding boxes of commands
+    public void setPadding(double padX, double padY) {
+        this.padX = padX;
+        this.padY = padY;
+        bounded = 0;
+    }
+
+    // get number of commands
+    public int size() {
+        return size;
+    }
+
+    // remove all commands
+    public void clear() {
+        // drop references to Colors of old mappings
+        Arrays.fill(colors, 0, size, null);
+        size = 0;
+        bounded = 0;
+    }
+
+    /**
+     * Adds the command to draw a shape. Commands past the capacity are ignored.
+     *
+     * @param shape  type of the shape
+     * @param color  pen color
+     * @param x      x-coordinate of the center
+     * @param y      y-coordinate of the center
+     * @param length size of the shape, calculated from velocity
+     */
+    public void add(ShapeType shape, Color color, double x, double y, double length) {
+        if (size == keys.length) return;
+        int i = size++;
+        keys[i] = ((long) (color.getRGB() & 0xFFFFFF) << RGB_SHIFT)
+            | ((long) shape.ordinal() << SHAPE_SHIFT) | i;
+        colors[i] = color;
+        shapes[i] = shape;
+        xs[i] = x;
+        ys[i] = y;
+        lengths[i] = length;
+    }
+
+    /**
+     * Sorts the commands by color and ShapeType and draws them, setting the pen
+     * color only when it changes. Shapes of the same color and type are drawn
+     * in the order they were added.
+     *
+     * @param renderer renderer to draw with
+     */
+    public void draw(Renderer renderer) {
+        Arrays.sort(keys, 0, size);
+        long lastRgb = -1;
+        for (int k = 0; k < size; k++) {
+            long key = keys[k];
+            int i = (int) key & INDEX_MASK;
+            long rgb = key >>> RGB_SHIFT;
+            if (rgb != lastRgb) {
+                renderer.setPenColor(colors[i]);
+                lastRgb = rgb;
+            }
+            SHAPES[(int) (key >>> SHAPE_SHIFT) & 0xF].draw(renderer, xs[i], ys[i], lengths[i]);
+        }
+    }
+
+    /**
+     * Draws the commands whose bounding boxes touch a region like draw(), in the
+     * same order, skipping the others.
+     *
+     * @param renderer renderer to draw with
+     * @param region   x0, y0, x1, y1 of the region
+     */
+    public void draw(Renderer renderer, double[] region) {
+        measure();
+        Arrays.sort(keys, 0, size);
+        long lastRgb = -1;
+        for (int k = 0; k < size; k++) {
+            long key = keys[k];
+            int i = (int) key & INDEX_MASK;
+            if (!touches(i, region)) continue;
+            long rgb = key >>> RGB_SHIFT;
+            if (rgb != lastRgb) {
+                renderer.setPenColor(colors[i]);
+                lastRgb = rgb;
+            }
+            SHAPES[(int) (key >>> SHAPE_SHIFT) & 0xF].draw(renderer, xs[i], ys[i], lengths[i]);
+        }
+    }
+
+    /**
+     * Widens a region to include the bounding box of every command. An empty
+     * region has x0 > x1.
+     *
+     * @param region x0, y0, x1, y1 of the region
+     */
+    public void union(double[] region) {
+        measure();
+        for (int i = 0; i < size; i++) include(i, region);
+    }
+
+    /**
+     * Widens a region until the bounding box of every command that touches it
+     * lies inside it.
+     *
+     * @param region x0, y0, x1, y1 of the region
+     * @return true if the region was widened
+     */
+    public boolean grow(double[] region) {
+        measure();
+        boolean grown = false;
+        for (boolean changed = true; changed; ) {
+            changed = false;
+            for (int i = 0; i < size; i++) {
+                if (touches(i, region) && include(i, region)) changed = true;
+            }
+            grown |= changed;
+        }
+        return grown;
+    }
+
+    // measure the bounding boxes of the commands added since the last time
+    private void measure() {
+        for (int i = bounded; i < size; i++) {
+            shapes[i].bounds(xs[i], ys[i], lengths[i], box);
+            x0s[i] = box[0] - padX;
+            y0s[i] = box[1] - padY;
+            x1s[i] = box[2] + padX;
+            y1s[i] = box[3] + padY;
+        }
+        bounded = size;
+    }
+
+    // check if the bounding box of command i touches the region
+    private boolean touches(int i, double[] region) {
+        return x0s[i] <= region[2] && x1s[i] >= region[0] && y0s[i] <= region[3] && y1s[i] >= region[1];
+    }
+
+    // widen the region to include the bounding box of command i, return true if widened
+    private boolean include(int i, double[] region) {
+        boolean widened = false;
+        if (x0s[i] < region[0]) { region[0] = x0s[i]; widened = true; }
+        if (y0s[i] < region[1]) { region[1] = y0s[i]; widened = true; }
+        if (x1s[i] > region[2]) { region[2] = x1s[i]; widened = true; }
+        if (y1s[i] > region[3]) { region[3] = y1s[i]; widened = true; }
+        return widened;
+    }
+}
@@ -0,0 +1,105 @@
+/* *****************************************************************************
+ *  Compilation:  javac EventList.java
+ *
+ *  An EventList holds the channel messages (NOTE_ON, NOTE_OFF, PROGRAM_CHANGE,
+ *  CONTROL_CHANGE, ...) of all tracks of a MIDI Sequence in the order in which
+ *  they are played, stored as primitives: each message packed into an int as
+ *  in MidiEventRing, and its tick in a long. Messages at the same tick keep
+ *  the order of their tracks, and their order within each track. System
+ *  messages and MetaMessages are not included (see TempoMap for tempo).
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+import java.util.Arrays;
+
+public final class EventList {
+    // constants
+    private static final int INDEX_BITS = 24; // bits of the message number in a sort key
+    public static final int MAX_SIZE = 1 << INDEX_BITS; // max number of messages
+
+    // instance variables
+    private final int[] events; // packed messages (see MidiEventRing), in tick order
+    private final long[] ticks; // tick of each message
+    private final long tickLength; // length of the Sequence in ticks
+
+    // constructor, reads the messages of a Sequence
+    public EventList(Sequence sequence) {
+        // collect channel messages of all tracks, with tick << 24 | message number
+        // as sort key so that messages at the same tick stay in order
+        int count = 0;
+        long[] keys = new long[1024];
+        int[] packed = new int[1024];
+        for (Track track : sequence.getTracks()) {
+            for (int i = 0; i < track.size(); i++) {
+                MidiEvent event = track.get(i);
+                MidiMessage message = event.getMessage();
+                if (!(message instanceof ShortMessage)) continue;
+                ShortMessage shortMessage = (ShortMessage) message;
+                if (shortMessage.getStatus() >= 0xF0) continue;
+                if (count == MAX_SIZE)
+                    throw new IllegalArgumentException("Too many MIDI messages: more than " + MAX_SIZE);
+                if (count == keys.length) {
+                    keys = Arrays.copyOf(keys, 2 * count);
+                    packed = Arrays.copyOf(packed, 2 * count);
+                }
+                packed[count] = MidiEventRing.pack(shortMessage.getStatus(),
+                    shortMessage.getData1(), shortMessage.getData2());
+                keys[count] = (event.getTick() << INDEX_BITS) | count;
+                count++;
+            }
+        }
+        Arrays.sort(keys, 0, count);
+
+        events = new int[count];
+        ticks = new long[count];
+        for (int i = 0; i < count; i++) {
+            events[i] = packed[(int) (keys[i] & (MAX_SIZE - 1))];
+            ticks[i] = keys[i] >>> INDEX_BITS;
+        }
+        tickLength = sequence.getTickLength();
+    }
+
+    /**
+     * Creates an EventList from messages that are already in order (for
+     * example, read from a MIDI file without creating a Sequence). The arrays
+     * are used, not copied.
+     *
+     * @param events     packed messages (see MidiEventRing), in tick order
+     * @param ticks      tick of each message
+     * @param tickLength length of the Sequence in ticks
+     */
+    public EventList(int[] events, long[] ticks, long tickLength) {
+        if (events.length != ticks.length)
+            throw new IllegalArgumentException("Different numbers of messages and ticks");
+        this.events = events;
+        this.ticks = ticks;
+        this.tickLength = tickLength;
+    }
+
+    // get number of messages
+    public int size() {
+        return events.length;
+    }
+
+    // get packed message i (see MidiEventRing)
+    public int getEvent(int i) {
+        return events[i];
+    }
+
+    // get tick of message i
+    public long getTick(int i) {
+        return ticks[i];
+    }
+
+    // get length of the Sequence in ticks
+    public long getTickLength() {
+        return tickLength;
+    }
+}
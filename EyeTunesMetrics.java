@@ -0,0 +1,302 @@
+/* *****************************************************************************
+ *  Compilation:  javac EyeTunesMetrics.java
+ *
+ *  EyeTunesMetrics holds the live performance counters of the visualizer and
+ *  exposes them as a JMX MXBean (eyetunes:type=EyeTunesMetrics), so a show
+ *  that stutters can be watched with jconsole or a local scraper, whether a
+ *  keyboard controller or a MIDI file is playing.
+ *
+ *  The thread that reads MIDI messages counts the events it reads by command
+ *  type and the notes playing after each NOTE_ON, and the graphics thread
+ *  counts each frame it shows: the time to build and to present it, the notes
+ *  looked up in the mappings table, and the bytes it allocated. Counters are
+ *  LongAdders (and LongAccumulators for maximums), so neither thread takes a
+ *  lock or waits for the other. The number of playing notes, the state of
+ *  the MIDI event queue, and the NOTE_ON to frame latency are read from their
+ *  owners when asked for.
+ *
+ *  Rates and per-frame averages are computed when they are read, from the
+ *  totals at the previous reads: the totals are kept from a read at least
+ *  WINDOW_NANOS ago, so a scraper that polls every second sees rates over the
+ *  last one to two seconds.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.sound.midi.ShortMessage;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+public final class EyeTunesMetrics implements EyeTunesMetricsMXBean {
+    // constants
+    public static final String OBJECT_NAME = "eyetunes:type=EyeTunesMetrics";
+    private static final long WINDOW_NANOS = 1000000000L; // min time between saved totals (1 s)
+    // command types counted, by (command >> 4) - 8, then MetaMessages
+    private static final String[] COMMANDS = { "NOTE_OFF", "NOTE_ON", "POLY_PRESSURE", "CONTROL_CHANGE",
+                                               "PROGRAM_CHANGE", "CHANNEL_PRESSURE", "PITCH_BEND", "META" };
+    // counters, events of each command type from EVENTS
+    private static final int FRAMES = 0, BUILD = 1, PRESENT = 2, LOOKUPS = 3, ALLOCATED = 4, EVENTS = 5;
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    // instance variables
+    private final LongAdder[] counters = new LongAdder[EVENTS + COMMANDS.length];
+    private final LongAccumulator maxBuild = new LongAccumulator(Math::max, 0);   // nanoseconds
+    private final LongAccumulator maxPresent = new LongAccumulator(Math::max, 0); // nanoseconds
+    private final LongAccumulator peakPolyphony = new LongAccumulator(Math::max, 0);
+    private final LongAdder allocationFrames = new LongAdder(); // frames whose allocation was measured
+    private final IntSupplier activeNotes; // number of playing notes
+    private final IntSupplier queueDepth;  // number of queued MIDI events
+    private final LongSupplier dropped;    // number of dropped MIDI events
+    private final FrameLatency latency;    // NOTE_ON to frame latency
+    private final long startNanos = System.nanoTime();
+    private ObjectName registered;         // name this is registered with, null if not
+
+    // totals saved at least WINDOW_NANOS apart (readers only, guarded by this)
+    private long[] olderTotals, newerTotals;
+    private long olderNanos, newerNanos;
+
+    /**
+     * Creates the counters, all 0.
+     *
+     * @param activeNotes number of notes playing
+     * @param queueDepth  number of MIDI events waiting to be read
+     * @param dropped     number of MIDI events dropped because the queue was full
+     * @param latency     time from each NOTE_ON received to the first frame that shows it
+     */
+    public EyeTunesMetrics(IntSupplier activeNotes, IntSupplier queueDepth, LongSupplier dropped,
+                           FrameLatency latency) {
+        for (int i = 0; i < counters.length; i++) counters[i] = new LongAdder();
+        this.activeNotes = activeNotes;
+        this.queueDepth = queueDepth;
+        this.dropped = dropped;
+        this.latency = latency;
+        olderTotals = newerTotals = new long[counters.length + 1];
+        olderNanos = newerNanos = startNanos;
+    }
+
+    // the JVM's per-thread allocation counter, null if it has none
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return null;
+        com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+        if (!counter.isThreadAllocatedMemorySupported() || !counter.isThreadAllocatedMemoryEnabled()) return null;
+        return counter;
+    }
+
+    /**
+     * Static helper method. Returns the number of bytes the current thread has
+     * allocated so far, to measure what a frame allocates.
+     *
+     * @return bytes allocated, -1 if the JVM does not count them
+     */
+    public static long allocatedBytes() {
+        return (THREADS == null) ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Registers these counters with the platform MBeanServer, replacing any
+     * EyeTunesMetrics registered before. Failures are printed, not thrown.
+     */
+    public synchronized void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) server.unregisterMBean(name);
+            server.registerMBean(this, name);
+            registered = name;
+        }
+        catch (JMException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    // remove these counters from the platform MBeanServer
+    public synchronized void unregister() {
+        if (registered == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registered);
+        }
+        catch (JMException e) {
+            System.err.println(e.getMessage());
+        }
+        registered = null;
+    }
+
+    /**
+     * Counts MIDI events read (thread that reads MIDI messages).
+     *
+     * @param events packed events (see MidiEventRing)
+     * @param count  number of events
+     */
+    public void eventsRead(int[] events, int count) {
+        for (int i = 0; i < count; i++) {
+            int status = MidiEventRing.getStatus(events[i]);
+            if (status == MidiEventRing.META)
+                counters[EVENTS + COMMANDS.length - 1].increment();
+            else if (status >= ShortMessage.NOTE_OFF && status < 0xF0)
+                counters[EVENTS + (status >> 4) - 8].increment();
+        }
+    }
+
+    /**
+     * Counts the notes playing after a NOTE_ON, for the peak polyphony (thread
+     * that reads MIDI messages).
+     *
+     * @param playing number of notes playing
+     */
+    public void notesPlaying(int playing) {
+        peakPolyphony.accumulate(playing);
+    }
+
+    /**
+     * Counts a frame that has been shown (graphics thread).
+     *
+     * @param buildNanos   time to copy the notes and draw the frame
+     * @param presentNanos time to show the frame
+     * @param lookups      notes looked up in the mappings table
+     * @param allocated    bytes allocated for the frame, negative if not measured
+     */
+    public void frameShown(long buildNanos, long presentNanos, int lookups, long allocated) {
+        counters[FRAMES].increment();
+        counters[BUILD].add(buildNanos);
+        counters[PRESENT].add(presentNanos);
+        counters[LOOKUPS].add(lookups);
+        maxBuild.accumulate(buildNanos);
+        maxPresent.accumulate(presentNanos);
+        if (allocated >= 0) {
+            counters[ALLOCATED].add(allocated);
+            allocationFrames.increment();
+        }
+    }
+
+    // change in each counter (and in frames whose allocation was measured) and the time,
+    // since totals saved at least WINDOW_NANOS ago, saving the current totals if the
+    // newest saved are that old
+    private synchronized long[] window() {
+        long now = System.nanoTime();
+        long[] totals = new long[counters.length + 1];
+        for (int i = 0; i < counters.length; i++) totals[i] = counters[i].sum();
+        totals[counters.length] = allocationFrames.sum();
+        if (now - newerNanos >= WINDOW_NANOS) {
+            olderTotals = newerTotals;
+            olderNanos = newerNanos;
+            newerTotals = totals;
+            newerNanos = now;
+        }
+        long[] change = new long[totals.length + 1];
+        for (int i = 0; i < totals.length; i++) change[i] = totals[i] - olderTotals[i];
+        change[totals.length] = now - olderNanos;
+        return change;
+    }
+
+    // change in a counter per second over a window
+    private static double perSecond(long[] window, int counter) {
+        long nanos = window[window.length - 1];
+        return (nanos <= 0) ? 0 : window[counter] * 1e9 / nanos;
+    }
+
+    // change in a counter per frame over a window
+    private static double perFrame(long[] window, int counter, int frames) {
+        return (window[frames] == 0) ? 0 : (double) window[counter] / window[frames];
+    }
+
+    // getters
+    public double getCurrentFps() {
+        return perSecond(window(), FRAMES);
+    }
+
+    public double getAverageFps() {
+        long nanos = System.nanoTime() - startNanos;
+        return (nanos <= 0) ? 0 : counters[FRAMES].sum() * 1e9 / nanos;
+    }
+
+    public long getFrames() {
+        return counters[FRAMES].sum();
+    }
+
+    public double getAverageBuildMillis() {
+        return perFrame(window(), BUILD, FRAMES) / 1e6;
+    }
+
+    public double getMaxBuildMillis() {
+        return maxBuild.get() / 1e6;
+    }
+
+    public double getAveragePresentMillis() {
+        return perFrame(window(), PRESENT, FRAMES) / 1e6;
+    }
+
+    public double getMaxPresentMillis() {
+        return maxPresent.get() / 1e6;
+    }
+
+    public int getActiveNotes() {
+        return activeNotes.getAsInt();
+    }
+
+    public int getPeakPolyphony() {
+        return (int) peakPolyphony.get();
+    }
+
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    public long getDroppedEvents() {
+        return dropped.getAsLong();
+    }
+
+    public double getMappingLookupsPerSecond() {
+        return perSecond(window(), LOOKUPS);
+    }
+
+    public double getAllocatedBytesPerFrame() {
+        if (THREADS == null) return -1;
+        return perFrame(window(), ALLOCATED, counters.length);
+    }
+
+    public Map<String, Double> getEventsPerSecond() {
+        long[] window = window();
+        Map<String, Double> rates = new LinkedHashMap<String, Double>();
+        for (int i = 0; i < COMMANDS.length; i++) {
+            rates.put(COMMANDS[i], perSecond(window, EVENTS + i));
+        }
+        return rates;
+    }
+
+    public Map<String, Double> getLatencyMillis() {
+        LatencyHistogram histogram = latency.getHistogram();
+        Map<String, Double> millis = new LinkedHashMap<String, Double>();
+        millis.put("mean", histogram.getMean() / 1e6);
+        millis.put("p50", histogram.getPercentile(50) / 1e6);
+        millis.put("p99", histogram.getPercentile(99) / 1e6);
+        millis.put("p99.9", histogram.getPercentile(99.9) / 1e6);
+        millis.put("max", histogram.getMax() / 1e6);
+        return millis;
+    }
+
+    public long getLatencyCount() {
+        return latency.getHistogram().getCount();
+    }
+
+    public void printLatency() {
+        latency.print(System.out);
+    }
+
+    public void resetPeaks() {
+        maxBuild.reset();
+        maxPresent.reset();
+        peakPolyphony.reset();
+        peakPolyphony.accumulate(activeNotes.getAsInt());
+    }
+}
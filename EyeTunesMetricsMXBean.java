@@ -0,0 +1,71 @@
+/* *****************************************************************************
+ *  Compilation:  javac EyeTunesMetricsMXBean.java
+ *
+ *  The management interface of EyeTunesMetrics: the live performance counters
+ *  of the visualizer, as JMX attributes that jconsole or a scraper can read.
+ *  Rates (per second) and averages (per frame) are over the last second or
+ *  two, or since the previous read if reads are further apart; maximums are
+ *  since the start or the last resetPeaks(). The NOTE_ON to frame latency
+ *  can be read as percentiles, or printed to stdout by printLatency(), as
+ *  --latency prints it on exit.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import java.util.Map;
+
+public interface EyeTunesMetricsMXBean {
+    // frames shown per second, recently
+    double getCurrentFps();
+
+    // frames shown per second, since the start
+    double getAverageFps();
+
+    // number of frames shown
+    long getFrames();
+
+    // time to copy the playing notes and draw a frame, before it is shown
+    double getAverageBuildMillis();
+
+    double getMaxBuildMillis();
+
+    // time to show (present) a drawn frame
+    double getAveragePresentMillis();
+
+    double getMaxPresentMillis();
+
+    // number of notes playing
+    int getActiveNotes();
+
+    // most notes playing at once
+    int getPeakPolyphony();
+
+    // number of MIDI events waiting to be read
+    int getQueueDepth();
+
+    // number of MIDI events dropped because the queue was full
+    long getDroppedEvents();
+
+    // notes looked up in the mappings table per second
+    double getMappingLookupsPerSecond();
+
+    // bytes allocated by the graphics thread per frame, -1 if not supported
+    double getAllocatedBytesPerFrame();
+
+    // MIDI events read per second, by command type (NOTE_ON, CONTROL_CHANGE, ...)
+    Map<String, Double> getEventsPerSecond();
+
+    // time from each NOTE_ON received to the first frame that shows it, in milliseconds:
+    // mean, p50, p99, p99.9, and max
+    Map<String, Double> getLatencyMillis();
+
+    // number of NOTE_ON to frame latencies measured
+    long getLatencyCount();
+
+    // print the NOTE_ON to frame latency to stdout
+    void printLatency();
+
+    // restart the maximums and the peak polyphony
+    void resetPeaks();
+}
@@ -0,0 +1,36 @@
+/* *****************************************************************************
+ *  Compilation:  javac FrameBuilt.java
+ *
+ *  A FrameBuilt is a JDK Flight Recorder event for each live frame drawn on
+ *  the graphics thread, lasting from copying the playing notes to the last
+ *  shape drawn, before the frame is shown (see FramePresented, which has the
+ *  same frame number).
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("eyetunes.FrameBuilt")
+@Label("Frame Built")
+@Description("A frame of playing notes drawn, before it is shown")
+@Category({"EyeTunes", "Rendering"})
+@StackTrace(false)
+public final class FrameBuilt extends jdk.jfr.Event {
+    @Label("Frame")
+    @Description("Number of the frame, counted from the start")
+    long frame;
+
+    @Label("Notes")
+    @Description("Number of playing notes")
+    int notes;
+
+    @Label("Shapes Drawn")
+    @Description("Number of notes with a shape in the mappings")
+    int shapes;
+}
@@ -0,0 +1,341 @@
+/* *****************************************************************************
+ *  Compilation:  javac FrameExporter.java
+ *
+ *  A FrameExporter renders the frames of a MIDI Sequence offline, without a
+ *  Sequencer, an audio device, or a display. The channel messages of all
+ *  tracks are read once into an EventList, and the time at which each is
+ *  played is calculated in microseconds (ticks are converted with a TempoMap,
+ *  so tempo changes are followed). For each frame time (frame / fps seconds),
+ *  the messages up to that time are routed through a MidiEventBus into a
+ *  NoteTable, exactly as they are while playing, and the playing notes are
+ *  drawn with CombineClasses.drawFrame() into an offscreen Java2DRenderer.
+ *
+ *  Frames only depend on the notes playing at their time, so they are rendered
+ *  in parallel on a ForkJoinPool. The frames are split into chunks, and one
+ *  quick pass over the messages first records the playing notes and programs
+ *  at the start of every chunk. Each chunk is rendered with a Worker (its own
+ *  renderer (frame buffer), DisplayList, and NoteTable), which it restores from
+ *  the chunk's start before routing the chunk's messages; Workers are reused by
+ *  later chunks, so there are at most as many as chunks rendered at once. The
+ *  ForkJoinPool is either created for one export or shared by several
+ *  FrameExporters (see BatchExporter), so that they together use a bounded
+ *  number of threads. Since a restored NoteTable keeps the order of the notes,
+ *  every frame is drawn exactly as it would be by a single thread, and the
+ *  output is byte-identical for any number of threads.
+ *
+ *  Frames are written to a directory, either as numbered PNG images
+ *  (frame-000000.png, frame-000001.png, ...) or as one raw RGB file
+ *  (frames.rgb, 3 bytes per pixel, top row first, one frame after another;
+ *  each worker writes its frames at their own position in the file).
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import javax.imageio.ImageIO;
+import javax.sound.midi.Sequence;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class FrameExporter {
+    // how frames are written
+    public enum Format { PNG, RGB }
+
+    // constants
+    private static final long MICROS = 1000000L; // microseconds per second
+    private static final int CHUNKS_PER_THREAD = 8; // chunks of frames for each thread, to balance work
+    private static final int MAX_CHUNK = 256; // max number of frames in a chunk
+    private static final long PROGRESS_MILLIS = 1000; // time between progress reports
+    public static final String RGB_FILENAME = "frames.rgb";
+
+    // instance variables
+    private final int[] events;  // packed messages (see MidiEventRing), in time order
+    private final long[] times;  // time of each message in microseconds
+    private final long length;   // length of the Sequence in microseconds
+
+    // constructor
+    public FrameExporter(Sequence sequence) {
+        this(new EventList(sequence), new TempoMap(sequence));
+    }
+
+    // constructor, from the messages of a Sequence and its tempos
+    public FrameExporter(EventList list, TempoMap tempoMap) {
+        length = tempoMap.toMicros(list.getTickLength());
+        // ticks are in order, so times are too
+        int count = list.size();
+        events = new int[count];
+        times = new long[count];
+        for (int i = 0; i < count; i++) {
+            events[i] = list.getEvent(i);
+            times[i] = tempoMap.toMicros(list.getTick(i));
+        }
+    }
+
+    // get length of the Sequence in microseconds
+    public long getLength() {
+        return length;
+    }
+
+    // get number of frames rendered at the given frame rate (from time 0 to the end)
+    public int getFrameCount(int fps) {
+        return (int) (length * fps / MICROS) + 1;
+    }
+
+    // get time of a frame in microseconds
+    private static long frameTime(int frame, int fps) {
+        return frame * MICROS / fps;
+    }
+
+    // playing notes and programs, updated by routing messages in time order
+    private final class Replay {
+        private final NoteTable notes = new NoteTable();
+        private final int[] programs = new int[NoteTable.CHANNELS];
+        private final MidiEventBus bus = new MidiEventBus();
+        private int next; // next message to route
+
+        Replay() {
+            bus.onProgramChange((channel, program, timeStamp) -> programs[channel] = program);
+            bus.onNoteOn((channel, pitch, velocity, timeStamp) ->
+                notes.noteOn(programs[channel], channel, pitch, velocity, timeStamp));
+            bus.onNoteOff((channel, pitch, velocity, timeStamp) -> notes.noteOff(channel, pitch));
+        }
+
+        // route all messages up to the given time
+        void advance(long time) {
+            while (next < events.length && times[next] <= time) {
+                bus.dispatch(events[next], times[next]);
+                next++;
+            }
+        }
+
+        // continue from the start of a chunk
+        void restore(Chunk chunk) {
+            notes.restore(chunk.notes, chunk.notes.length);
+            System.arraycopy(chunk.programs, 0, programs, 0, programs.length);
+            next = chunk.next;
+        }
+    }
+
+    // frames first to last - 1, with the playing notes before the first frame's messages
+    private static final class Chunk {
+        final int first, last;
+        final int next;        // first message not yet routed
+        final long[] notes;    // packed playing notes, in NoteTable order
+        final int[] programs;  // program of each channel
+
+        Chunk(int first, int last, int next, long[] notes, int[] programs) {
+            this.first = first;
+            this.last = last;
+            this.next = next;
+            this.notes = notes;
+            this.programs = programs;
+        }
+    }
+
+    // buffers for rendering one chunk at a time
+    private final class Worker {
+        final Java2DRenderer renderer = new Java2DRenderer(CombineClasses.WIDTH, CombineClasses.HEIGHT, true);
+        final long[] frameNotes = new long[NoteTable.SLOTS];
+        final DisplayList frameList = new DisplayList(NoteTable.SLOTS);
+        final Replay replay = new Replay();
+        final byte[] rgb = new byte[3 * renderer.getWidth() * renderer.getHeight()];
+    }
+
+    /**
+     * Renders every frame of the Sequence on the given number of threads and
+     * writes it to the directory, reporting progress about once a second.
+     *
+     * @param dir      directory to write frames to (created if needed)
+     * @param fps      frame rate (frames per second)
+     * @param format   PNG images or raw RGB
+     * @param table    mappings of programvisuals and colornotes
+     * @param threads  number of threads to render with
+     * @param progress stream to report progress to, or null
+     * @return number of frames written
+     * @throws IOException if a frame could not be written
+     */
+    public int export(File dir, int fps, Format format, MappingTable table, int threads,
+                      PrintStream progress) throws IOException {
+        if (threads <= 0) throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return export(dir, fps, format, table, pool, progress);
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Renders every frame of the Sequence on a ForkJoinPool, which may be shared
+     * with other exports, and writes it to the directory, reporting progress
+     * about once a second.
+     *
+     * @param dir      directory to write frames to (created if needed)
+     * @param fps      frame rate (frames per second)
+     * @param format   PNG images or raw RGB
+     * @param table    mappings of programvisuals and colornotes
+     * @param pool     ForkJoinPool to render with (not shut down)
+     * @param progress stream to report progress to, or null
+     * @return number of frames written
+     * @throws IOException if a frame could not be written
+     */
+    public int export(File dir, int fps, Format format, MappingTable table, ForkJoinPool pool,
+                      PrintStream progress) throws IOException {
+        if (fps <= 0) throw new IllegalArgumentException("Frame rate must be positive: " + fps);
+        dir.mkdirs();
+        if (!dir.isDirectory()) throw new IOException("Cannot create directory: " + dir);
+
+        int frames = getFrameCount(fps);
+        Chunk[] chunks = plan(frames, fps, pool.getParallelism());
+        AtomicInteger done = new AtomicInteger();
+        List<Worker> workers = new ArrayList<Worker>();  // all Workers, to close
+        Queue<Worker> idle = new ConcurrentLinkedQueue<Worker>(); // Workers not rendering
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+        FileChannel raw = null;
+        ForkJoinTask<?> all = null;
+        try {
+            if (format == Format.RGB) {
+                raw = FileChannel.open(new File(dir, RGB_FILENAME).toPath(), StandardOpenOption.CREATE,
+                                       StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            }
+            FileChannel out = raw;
+            for (Chunk chunk : chunks) {
+                tasks.add(ForkJoinTask.adapt(() -> {
+                    Worker w = idle.poll();
+                    if (w == null) {
+                        w = new Worker();
+                        synchronized (workers) {
+                            workers.add(w);
+                        }
+                    }
+                    try {
+                        render(chunk, w, fps, format, table, dir, out, done);
+                    }
+                    finally {
+                        idle.add(w);
+                    }
+                }));
+            }
+            all = pool.submit(() -> { ForkJoinTask.invokeAll(tasks); });
+
+            // report progress until all chunks are rendered
+            long begin = System.nanoTime();
+            while (true) {
+                try {
+                    all.get(PROGRESS_MILLIS, TimeUnit.MILLISECONDS);
+                    break;
+                }
+                catch (TimeoutException e) {
+                    if (progress != null) {
+                        int n = done.get();
+                        double seconds = (System.nanoTime() - begin) / 1e9;
+                        progress.printf("Rendered %d/%d frames (%d%%), %.1f frames per second%n",
+                                        n, frames, 100L * n / frames, n / seconds);
+                    }
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Rendering was interrupted");
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
+        finally {
+            // if this export failed, stop its chunks that have not started (other
+            // exports may share the pool); done tasks are not affected
+            if (all != null) all.cancel(true);
+            for (ForkJoinTask<?> task : tasks) task.cancel(true);
+            if (raw != null) raw.close();
+            synchronized (workers) {
+                for (Worker w : workers) w.renderer.close();
+            }
+        }
+        return frames;
+    }
+
+    // split the frames into chunks, recording the playing notes at the start of each
+    private Chunk[] plan(int frames, int fps, int threads) {
+        int size = (int) Math.min(MAX_CHUNK, Math.max(1, (long) frames / ((long) threads * CHUNKS_PER_THREAD)));
+        Chunk[] chunks = new Chunk[(frames + size - 1) / size];
+        Replay replay = new Replay();
+        long[] snapshot = new long[NoteTable.SLOTS];
+        for (int c = 0; c < chunks.length; c++) {
+            int first = c * size;
+            // messages before the first frame's time
+            replay.advance(frameTime(first, fps) - 1);
+            int count = replay.notes.snapshot(snapshot);
+            chunks[c] = new Chunk(first, Math.min(frames, first + size), replay.next,
+                                  Arrays.copyOf(snapshot, count), replay.programs.clone());
+        }
+        return chunks;
+    }
+
+    // render the frames of a chunk with a worker's buffers
+    private void render(Chunk chunk, Worker w, int fps, Format format, MappingTable table,
+                        File dir, FileChannel raw, AtomicInteger done) {
+        w.replay.restore(chunk);
+        try {
+            for (int frame = chunk.first; frame < chunk.last; frame++) {
+                w.replay.advance(frameTime(frame, fps));
+                int count = w.replay.notes.snapshot(w.frameNotes);
+                CombineClasses.drawFrame(w.renderer, table, w.frameNotes, count, w.frameList);
+
+                if (format == Format.RGB) {
+                    // write at the frame's own position in the file
+                    ByteBuffer buffer = ByteBuffer.wrap(toRGB(w.renderer.getImage(), w.rgb));
+                    long position = (long) frame * w.rgb.length;
+                    while (buffer.hasRemaining()) {
+                        position += raw.write(buffer, position);
+                    }
+                }
+                else {
+                    File file = new File(dir, String.format("frame-%06d.png", frame));
+                    if (!ImageIO.write(w.renderer.getImage(), "png", file))
+                        throw new IOException("No PNG writer for " + file);
+                }
+                done.incrementAndGet();
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // copy the pixels of a TYPE_INT_RGB image into rgb, 3 bytes per pixel
+    private static byte[] toRGB(BufferedImage image, byte[] rgb) {
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        for (int i = 0, j = 0; i < pixels.length; i++) {
+            int pixel = pixels[i];
+            rgb[j++] = (byte) (pixel >>> 16);
+            rgb[j++] = (byte) (pixel >>> 8);
+            rgb[j++] = (byte) pixel;
+        }
+        return rgb;
+    }
+}
@@ -0,0 +1,147 @@
+/* *****************************************************************************
+ *  Compilation:  javac FrameLatency.java
+ *
+ *  A FrameLatency measures the time from each NOTE_ON being received to the
+ *  first frame that shows it being presented, and records it in a
+ *  LatencyHistogram. Times are read from one clock in microseconds, chosen by
+ *  the caller: the time since a keyboard controller was opened, or the
+ *  Sequencer's position while a MIDI file plays.
+ *
+ *  The thread that reads MIDI messages calls noteOn() after each NOTE_ON
+ *  reaches the NoteTable, with the NoteTable's version at that moment and the
+ *  time the NOTE_ON was received. The graphics thread calls frameShown() after
+ *  each frame is shown, with the NoteTable's version read before the frame's
+ *  notes were copied: every NOTE_ON at or before that version is in the frame.
+ *  If nothing on the canvas changed, no frame is shown, and it calls
+ *  frameSkipped() instead: the NOTE_ONs up to that version (a note that started
+ *  and stopped between two frames) will never be shown, so are not measured.
+ *  The pending NOTE_ONs are kept in a ring between the two threads, like a
+ *  MidiEventRing; if the ring is full (no frames are being shown), new NOTE_ONs
+ *  are not measured.
+ *
+ *  A keyboard controller's NOTE_ON is received at the time the receiver gets
+ *  it, unless the controller time stamps its messages: then the time is the
+ *  device's time stamp mapped onto the receiving clock (see MidiInput), which
+ *  the MidiMerger also orders it by, so the latency includes any delay in
+ *  delivering it beyond the smallest delay seen from that controller.
+ *
+ *  When playback jumps (a seek), the clock jumps too, so restart() discards
+ *  the pending NOTE_ONs instead of measuring them against the new time.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class FrameLatency {
+    // instance variables
+    private final int mask;          // capacity - 1
+    private final int[] versions;    // NoteTable version after each NOTE_ON
+    private final long[] received;   // time each NOTE_ON was received, in microseconds
+    private final AtomicLong head = new AtomicLong(); // next NOTE_ON to measure
+    private final AtomicLong tail = new AtomicLong(); // next NOTE_ON to write
+    private volatile long restarted = 0;  // NOTE_ONs before this one are discarded
+    private final AtomicLong skipped = new AtomicLong(); // NOTE_ONs not measured
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    // constructor
+    public FrameLatency(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        this.mask = capacity - 1;
+        this.versions = new int[capacity];
+        this.received = new long[capacity];
+    }
+
+    // getters
+    // get histogram of latencies in nanoseconds
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    // get number of NOTE_ONs not measured because the ring was full
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    /**
+     * Adds a NOTE_ON that has reached the NoteTable (thread that reads MIDI
+     * messages only).
+     *
+     * @param version NoteTable version after the NOTE_ON
+     * @param time    time the NOTE_ON was received, in microseconds
+     */
+    public void noteOn(int version, long time) {
+        long t = tail.get();
+        if (t - head.get() > mask) {
+            skipped.incrementAndGet();
+            return;
+        }
+        int i = (int) t & mask;
+        versions[i] = version;
+        received[i] = time;
+        tail.set(t + 1);
+    }
+
+    /**
+     * Discards the pending NOTE_ONs, after playback has jumped (thread that
+     * reads MIDI messages only).
+     */
+    public void restart() {
+        restarted = tail.get();
+    }
+
+    /**
+     * Records the latency of every pending NOTE_ON in a frame that has just
+     * been shown (graphics thread only).
+     *
+     * @param version NoteTable version read before the frame's notes were copied
+     * @param time    time the frame was shown, in microseconds
+     * @return number of latencies recorded
+     */
+    public int frameShown(int version, long time) {
+        long h = Math.max(head.get(), restarted);
+        long t = tail.get();
+        int n = 0;
+        for (; h < t; h++) {
+            int i = (int) h & mask;
+            // versions wrap around, so they are compared by difference
+            if (versions[i] - version > 0) break;
+            long latency = time - received[i];
+            if (latency >= 0) {
+                histogram.record(latency * 1000);
+                n++;
+            }
+        }
+        head.set(h);
+        return n;
+    }
+
+    /**
+     * Discards the pending NOTE_ONs up to a version, after a frame was not shown
+     * because nothing on the canvas changed (graphics thread only).
+     *
+     * @param version NoteTable version read before the frame's notes were copied
+     */
+    public void frameSkipped(int version) {
+        long h = Math.max(head.get(), restarted);
+        long t = tail.get();
+        // versions wrap around, so they are compared by difference
+        while (h < t && versions[(int) h & mask] - version <= 0) h++;
+        head.set(h);
+    }
+
+    /**
+     * Prints the percentiles of the latencies, and the number of NOTE_ONs not
+     * measured.
+     *
+     * @param out stream to print to
+     */
+    public void print(PrintStream out) {
+        histogram.print(out, "NOTE_ON to frame latency");
+        if (skipped.get() > 0)
+            out.println("NOTE_ONs not measured (no frames shown): " + skipped.get());
+    }
+}
@@ -0,0 +1,30 @@
+/* *****************************************************************************
+ *  Compilation:  javac FramePresented.java
+ *
+ *  A FramePresented is a JDK Flight Recorder event for each live frame shown,
+ *  lasting as long as the renderer's show() (see FrameBuilt, which has the
+ *  same frame number).
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("eyetunes.FramePresented")
+@Label("Frame Presented")
+@Description("A drawn frame shown by the renderer")
+@Category({"EyeTunes", "Rendering"})
+@StackTrace(false)
+public final class FramePresented extends jdk.jfr.Event {
+    @Label("Frame")
+    @Description("Number of the frame, counted from the start")
+    long frame;
+
+    @Label("Renderer")
+    String renderer;
+}
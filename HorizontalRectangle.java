@@ -20,13 +20,17 @@ public class HorizontalRectangle implements Shape {
     private double y; // y coord
     private double halfLength; // half length
     private double halfHeight; // half height
+    // constants
+    // unit rectangle (half length and half height 1), clockwise bottom left
+    private static final double[] UNIT_X = {-1, -1, 1, 1};
+    private static final double[] UNIT_Y = {-1, 1, 1, -1};
+    // scratch coordinates for drawing, one pair for each thread
+    private static final ThreadLocal<double[][]> SCRATCH =
+        ThreadLocal.withInitial(() -> new double[2][UNIT_X.length]);
 
     // constructor
     public HorizontalRectangle(double x, double y, double radius) {
-        this.x = x;
-        this.y = y;
-        this.halfLength = radius / 2;
-        this.halfHeight = radius / 4;
+        reset(x, y, radius);
     }
 
     // getters
@@ -52,16 +56,32 @@ public class HorizontalRectangle implements Shape {
 
     // get array of x-coordinates to draw (clockwise bottom left)
     public double[] getXCoords() {
-        double[] coords = {x - halfLength, x - halfLength, x + halfLength, x + halfLength};
+        double[] coords = new double[UNIT_X.length];
+        getCoords(coords, new double[UNIT_Y.length]);
         return coords;
     }
 
     // get array of y-coordinates to draw (clockwise bottom left)
     public double[] getYCoords() {
-        double[] coords = {y - halfHeight, y + halfHeight, y + halfHeight, y - halfHeight};
+        double[] coords = new double[UNIT_Y.length];
+        getCoords(new double[UNIT_X.length], coords);
         return coords;
     }
 
+    // get number of coordinates to draw
+    public int getNumCoords() {
+        return UNIT_X.length;
+    }
+
+    // copy coordinates to draw (clockwise bottom left), scaled from unit rectangle
+    public int getCoords(double[] xs, double[] ys) {
+        for (int i = 0; i < UNIT_X.length; i++) {
+            xs[i] = x + halfLength * UNIT_X[i];
+            ys[i] = y + halfHeight * UNIT_Y[i];
+        }
+        return UNIT_X.length;
+    }
+
     // setters
     // set x coordinate - center
     public void setX(double newX) {
@@ -83,8 +103,18 @@ public class HorizontalRectangle implements Shape {
         halfHeight = newHeight / 4;
     }
 
-    // draw the shape
-    public void draw() {
-        StdDraw.filledPolygon(getXCoords(), getYCoords());
+    // set center, halflength, and halfheight, as in the constructor
+    public void reset(double newX, double newY, double radius) {
+        this.x = newX;
+        this.y = newY;
+        this.halfLength = radius / 2;
+        this.halfHeight = radius / 4;
+    }
+
+    // draw the shape with the renderer
+    public void draw(Renderer renderer) {
+        double[][] scratch = SCRATCH.get();
+        int n = getCoords(scratch[0], scratch[1]);
+        renderer.filledPolygon(scratch[0], scratch[1], n);
     }
 }
@@ -0,0 +1,286 @@
+/* *****************************************************************************
+ *  Compilation:  javac Java2DRenderer.java
+ *
+ *  The Java2DRenderer class implements the Renderer interface by drawing
+ *  directly with Java2D, without StdDraw's synchronized static canvas. On a
+ *  display, it draws into the back buffer of a window's BufferStrategy, which
+ *  flips pages (or copies from an accelerated VolatileImage) when a frame is
+ *  shown. When there is no display (headless) or when asked to, it draws into
+ *  an offscreen BufferedImage instead, which can be read with getImage().
+ *
+ *  Shapes are not drawn one at a time: all filled polygons, all circles, and
+ *  all lines of the current pen color are collected into three Path2Ds, which
+ *  are filled (or stroked) once when the pen color changes or the frame is
+ *  shown. Polygons are added with the same winding, so overlapping shapes of
+ *  the same color fill their union instead of cancelling out. Shapes are drawn
+ *  as StdDraw draws them: antialiased, with y up, and with StdDraw's default
+ *  pen for lines.
+ *
+ *  The offscreen image keeps the last frame shown, and so does the back buffer
+ *  when the BufferStrategy copies it to the window instead of flipping pages,
+ *  so a frame can only clear and draw a region of it, though show() still
+ *  presents the whole canvas. Once the buffers are lost, the next frame draws
+ *  the whole canvas again.
+ *
+ *  Keys typed in the window are queued, and read with nextKeyTyped() as
+ *  StdDraw's are.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import java.awt.BasicStroke;
+import java.awt.BufferCapabilities;
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.RenderingHints;
+import java.awt.Toolkit;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import javax.swing.JFrame;
+
+public final class Java2DRenderer implements Renderer {
+    // constants
+    private static final float PEN_WIDTH = 0.002f * 512; // StdDraw's default pen, in pixels
+
+    // instance variables
+    private final int width;  // canvas width in pixels
+    private final int height; // canvas height in pixels
+    private final JFrame frame;              // window, null if offscreen
+    private final BufferStrategy strategy;   // page flipping buffers, null if offscreen
+    private final BufferedImage image;       // offscreen image, null if on a display
+    private Graphics2D g;                    // graphics of the frame being drawn
+    private Color penColor = Color.WHITE;    // color of the collected shapes
+    private boolean lost = false;            // true if the buffers were lost since the last clear()
+
+    // shapes of the current pen color, in pixels, not yet drawn
+    private final Path2D.Double fills = new Path2D.Double(Path2D.WIND_NON_ZERO, 1024);
+    private final Path2D.Double circles = new Path2D.Double(Path2D.WIND_NON_ZERO, 1024);
+    private final Path2D.Double lines = new Path2D.Double(Path2D.WIND_NON_ZERO, 1024);
+    private boolean hasFills, hasCircles, hasLines;
+    private double lastX, lastY; // end of the last line
+    private final Ellipse2D.Double ellipse = new Ellipse2D.Double(); // reused for circles
+    private final Queue<Character> keysTyped = new ConcurrentLinkedQueue<Character>(); // typed in window
+
+    /**
+     * Creates a Java2DRenderer with a canvas of the given size.
+     *
+     * @param width     canvas width in pixels
+     * @param height    canvas height in pixels
+     * @param offscreen true to draw into an offscreen image even if there is a
+     *                  display (always offscreen when headless)
+     */
+    public Java2DRenderer(int width, int height, boolean offscreen) {
+        this.width = width;
+        this.height = height;
+        if (offscreen || GraphicsEnvironment.isHeadless()) {
+            frame = null;
+            strategy = null;
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            g = image.createGraphics();
+            configure(g);
+        }
+        else {
+            // the canvas is repainted by show(), not by Swing
+            Canvas canvas = new Canvas();
+            canvas.setPreferredSize(new Dimension(width, height));
+            canvas.setIgnoreRepaint(true);
+            frame = new JFrame("EyeTunes");
+            frame.setIgnoreRepaint(true);
+            frame.setResizable(false);
+            frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+            frame.add(canvas);
+            canvas.addKeyListener(new KeyAdapter() {
+                    public void keyTyped(KeyEvent e) {
+                        keysTyped.add(e.getKeyChar());
+                    }
+                });
+            frame.pack();
+            frame.setVisible(true);
+            canvas.requestFocus();
+            canvas.createBufferStrategy(2);
+            strategy = canvas.getBufferStrategy();
+            image = null;
+        }
+    }
+
+    // set antialiasing and pen as StdDraw does
+    private static void configure(Graphics2D g) {
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.setStroke(new BasicStroke(PEN_WIDTH, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+    }
+
+    // get graphics of the frame being drawn, starting a frame if needed
+    private Graphics2D graphics() {
+        if (g == null) {
+            g = (Graphics2D) strategy.getDrawGraphics();
+            configure(g);
+        }
+        return g;
+    }
+
+    // getters
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    // check if drawing into an offscreen image
+    public boolean isOffscreen() {
+        return image != null;
+    }
+
+    // get offscreen image (the last shown frame), null if on a display
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    // convert coordinates to pixels (y is up in coordinates, down in pixels)
+    private double scaleX(double x) {
+        return x * width;
+    }
+
+    private double scaleY(double y) {
+        return (1.0 - y) * height;
+    }
+
+    // drawing
+    public void clear(Color color) {
+        resetPaths();
+        Graphics2D graphics = graphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, width, height);
+        lost = false;
+    }
+
+    public boolean keepsFrame() {
+        if (strategy == null) return true;
+        BufferCapabilities capabilities = strategy.getCapabilities();
+        return !lost && (!capabilities.isPageFlipping()
+                         || capabilities.getFlipContents() == BufferCapabilities.FlipContents.COPIED);
+    }
+
+    public void clear(Color color, double x0, double y0, double x1, double y1) {
+        resetPaths();
+        Graphics2D graphics = graphics();
+        graphics.setColor(color);
+        // the region is on pixel boundaries
+        int px0 = (int) Math.round(scaleX(x0));
+        int py0 = (int) Math.round(scaleY(y1));
+        graphics.fillRect(px0, py0, (int) Math.round(scaleX(x1)) - px0, (int) Math.round(scaleY(y0)) - py0);
+    }
+
+    public void setPenColor(Color color) {
+        if (color.equals(penColor)) return;
+        flush();
+        penColor = color;
+    }
+
+    public void filledPolygon(double[] xs, double[] ys, int n) {
+        if (n < 3) return;
+        // twice the signed area in pixels, to add every polygon with the same winding
+        double area = 0.0;
+        for (int i = 0, j = n - 1; i < n; j = i++) {
+            area += (xs[j] - xs[i]) * (ys[j] + ys[i]);
+        }
+        if (area >= 0) {
+            fills.moveTo(scaleX(xs[0]), scaleY(ys[0]));
+            for (int i = 1; i < n; i++) fills.lineTo(scaleX(xs[i]), scaleY(ys[i]));
+        }
+        else {
+            fills.moveTo(scaleX(xs[n - 1]), scaleY(ys[n - 1]));
+            for (int i = n - 2; i >= 0; i--) fills.lineTo(scaleX(xs[i]), scaleY(ys[i]));
+        }
+        fills.closePath();
+        hasFills = true;
+    }
+
+    public void filledCircle(double x, double y, double radius) {
+        double ws = 2 * radius * width;
+        double hs = 2 * radius * height;
+        // circles of at most a pixel are drawn as a pixel, as in StdDraw
+        if (ws <= 1 && hs <= 1) {
+            Graphics2D graphics = graphics();
+            graphics.setColor(penColor);
+            graphics.fillRect((int) Math.round(scaleX(x)), (int) Math.round(scaleY(y)), 1, 1);
+            return;
+        }
+        ellipse.setFrame(scaleX(x) - ws / 2, scaleY(y) - hs / 2, ws, hs);
+        circles.append(ellipse, false);
+        hasCircles = true;
+    }
+
+    public void line(double x0, double y0, double x1, double y1) {
+        double px0 = scaleX(x0);
+        double py0 = scaleY(y0);
+        // continue the last line if this one starts where it ended
+        if (!hasLines || px0 != lastX || py0 != lastY) lines.moveTo(px0, py0);
+        lastX = scaleX(x1);
+        lastY = scaleY(y1);
+        lines.lineTo(lastX, lastY);
+        hasLines = true;
+    }
+
+    // draw the collected shapes in the pen color
+    private void flush() {
+        if (!hasFills && !hasCircles && !hasLines) return;
+        Graphics2D graphics = graphics();
+        graphics.setColor(penColor);
+        if (hasFills) graphics.fill(fills);
+        if (hasCircles) graphics.fill(circles);
+        if (hasLines) graphics.draw(lines);
+        resetPaths();
+    }
+
+    // forget the collected shapes
+    private void resetPaths() {
+        fills.reset();
+        circles.reset();
+        lines.reset();
+        hasFills = false;
+        hasCircles = false;
+        hasLines = false;
+    }
+
+    public void show() {
+        flush();
+        if (strategy == null) return;
+        graphics().dispose();
+        g = null;
+        // if the buffers were lost, the next frame draws everything again
+        strategy.show();
+        if (strategy.contentsLost() || strategy.contentsRestored()) lost = true;
+        Toolkit.getDefaultToolkit().sync();
+    }
+
+    // keys
+    public boolean hasNextKeyTyped() {
+        return !keysTyped.isEmpty();
+    }
+
+    public char nextKeyTyped() {
+        Character key = keysTyped.poll();
+        if (key == null) throw new NoSuchElementException("No key typed");
+        return key;
+    }
+
+    public void close() {
+        resetPaths();
+        if (frame != null) frame.dispose();
+        else g.dispose();
+    }
+}
@@ -0,0 +1,126 @@
+/* *****************************************************************************
+ *  Compilation:  javac Keyframes.java
+ *
+ *  Keyframes let playback of a MIDI Sequence jump to any tick with the right
+ *  notes already playing, instead of an empty canvas until new NOTE_ONs
+ *  arrive. One pass over the Sequence's EventList routes its messages through
+ *  a MidiEventBus into a NoteTable, exactly as they are while playing, and
+ *  every interval ticks records a keyframe: the playing notes (packed, in
+ *  NoteTable order), the program of each channel, and the first message not
+ *  yet routed. Keyframe k holds the state just before tick k * interval.
+ *
+ *  To seek to a tick, seek() restores the last keyframe at or before the tick
+ *  into a NoteTable and the programs, then routes the messages from the
+ *  keyframe up to (but not including) the tick through a MidiEventBus, so at
+ *  most one interval of messages is replayed. The messages at the tick itself
+ *  are left for the Sequencer to play.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import java.util.Arrays;
+
+public final class Keyframes {
+    // instance variables
+    private final EventList list;   // messages of the Sequence
+    private final TempoMap tempoMap; // converts ticks to microseconds
+    private final long interval;    // ticks between keyframes
+    private final int count;        // number of keyframes
+
+    // keyframe k: first message not yet routed, programs at k * CHANNELS,
+    // and playing notes from noteStarts[k] to noteStarts[k + 1] - 1
+    private final int[] nextEvents;
+    private final int[] programs;
+    private final int[] noteStarts;
+    private final long[] notes;
+
+    /**
+     * Records the keyframes of a Sequence.
+     *
+     * @param list     messages of the Sequence
+     * @param tempoMap tempos of the Sequence
+     * @param interval ticks between keyframes
+     */
+    public Keyframes(EventList list, TempoMap tempoMap, long interval) {
+        if (interval <= 0) throw new IllegalArgumentException("Interval must be positive: " + interval);
+        this.list = list;
+        this.tempoMap = tempoMap;
+        this.interval = interval;
+        long frames = list.getTickLength() / interval + 1;
+        if (frames > Integer.MAX_VALUE / NoteTable.CHANNELS)
+            throw new IllegalArgumentException("Too many keyframes: " + frames);
+        count = (int) frames;
+        nextEvents = new int[count];
+        programs = new int[count * NoteTable.CHANNELS];
+        noteStarts = new int[count + 1];
+
+        // route messages in order, as while playing
+        NoteTable table = new NoteTable();
+        int[] current = new int[NoteTable.CHANNELS];
+        MidiEventBus bus = new MidiEventBus();
+        bus.onProgramChange((channel, program, timeStamp) -> current[channel] = program);
+        bus.onNoteOn((channel, pitch, velocity, timeStamp) ->
+            table.noteOn(current[channel], channel, pitch, velocity, timeStamp));
+        bus.onNoteOff((channel, pitch, velocity, timeStamp) -> table.noteOff(channel, pitch));
+
+        long[] snapshot = new long[NoteTable.SLOTS];
+        long[] all = new long[1024];
+        int size = 0;
+        int next = 0;
+        for (int k = 0; k < count; k++) {
+            // messages before the keyframe's tick
+            long tick = k * interval;
+            while (next < list.size() && list.getTick(next) < tick) {
+                bus.dispatch(list.getEvent(next), tempoMap.toMicros(list.getTick(next)));
+                next++;
+            }
+            int n = table.snapshot(snapshot);
+            if (size + n > all.length) all = Arrays.copyOf(all, Math.max(2 * all.length, size + n));
+            System.arraycopy(snapshot, 0, all, size, n);
+            System.arraycopy(current, 0, programs, k * NoteTable.CHANNELS, NoteTable.CHANNELS);
+            nextEvents[k] = next;
+            noteStarts[k] = size;
+            size += n;
+        }
+        noteStarts[count] = size;
+        notes = Arrays.copyOf(all, size);
+    }
+
+    // getters
+    // get number of keyframes
+    public int size() {
+        return count;
+    }
+
+    // get ticks between keyframes
+    public long getInterval() {
+        return interval;
+    }
+
+    /**
+     * Sets the playing notes and programs to those just before the given tick:
+     * restores the last keyframe at or before the tick, then routes the
+     * messages from the keyframe up to the tick through the bus, whose handlers
+     * update notes and programs.
+     *
+     * @param tick     tick of the Sequence to seek to
+     * @param notes    NoteTable of playing notes, restored from the keyframe
+     * @param programs program of each channel, restored from the keyframe
+     * @param bus      routes the messages after the keyframe
+     * @return number of messages routed after the keyframe
+     */
+    public int seek(long tick, NoteTable notes, int[] programs, MidiEventBus bus) {
+        int k = (int) Math.min(Math.max(tick, 0) / interval, count - 1);
+        notes.restore(Arrays.copyOfRange(this.notes, noteStarts[k], noteStarts[k + 1]),
+                      noteStarts[k + 1] - noteStarts[k]);
+        System.arraycopy(this.programs, k * NoteTable.CHANNELS, programs, 0, NoteTable.CHANNELS);
+        int first = nextEvents[k];
+        int next = first;
+        while (next < list.size() && list.getTick(next) < tick) {
+            bus.dispatch(list.getEvent(next), tempoMap.toMicros(list.getTick(next)));
+            next++;
+        }
+        return next - first;
+    }
+}
@@ -0,0 +1,127 @@
+/* *****************************************************************************
+ *  Compilation:  javac LatencyHistogram.java
+ *
+ *  A LatencyHistogram counts latencies in nanoseconds in log-linear buckets,
+ *  like HdrHistogram: every power of two is split into 32 equal buckets, so a
+ *  latency is known to within about 3% however large it is, in a fixed array
+ *  of 1888 counts (values below 64 ns have a bucket each). Recording a
+ *  latency takes a few atomic updates and no lock, so any thread can record
+ *  while another reads percentiles or prints the histogram.
+ *
+ *  A percentile is reported as the highest latency in its bucket (and never
+ *  more than the highest latency recorded), so it is never understated.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public final class LatencyHistogram {
+    // constants
+    private static final int SUB_BITS = 5;              // log2 of buckets per power of two
+    private static final int SUB = 1 << SUB_BITS;       // buckets per power of two
+    private static final int BUCKETS = SUB * (64 - SUB_BITS);
+
+    // instance variables
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong(); // number of latencies
+    private final AtomicLong total = new AtomicLong(); // sum of latencies
+    private final AtomicLong max   = new AtomicLong(); // highest latency
+
+    // helpers to convert a latency to its bucket and back
+    private static int bucket(long nanos) {
+        if (nanos < 2 * SUB) return (int) nanos;
+        int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BITS;
+        return SUB * (shift + 1) + (int) (nanos >>> shift) - SUB;
+    }
+
+    // highest latency in a bucket
+    private static long highest(int bucket) {
+        if (bucket < 2 * SUB) return bucket;
+        int shift = bucket / SUB - 1;
+        long top = bucket % SUB + SUB;
+        return ((top + 1) << shift) - 1;
+    }
+
+    /**
+     * Records a latency. Negative latencies are recorded as 0.
+     *
+     * @param nanos latency in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(bucket(nanos));
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    // remove all latencies
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    // getters
+    // get number of latencies recorded
+    public long getCount() {
+        return count.get();
+    }
+
+    // get highest latency in nanoseconds, 0 if none
+    public long getMax() {
+        return max.get();
+    }
+
+    // get mean latency in nanoseconds, 0 if none
+    public double getMean() {
+        long n = count.get();
+        return (n == 0) ? 0 : (double) total.get() / n;
+    }
+
+    /**
+     * Returns the latency that the given percentage of latencies are at or
+     * below, for example 99.9 for the 99.9th percentile.
+     *
+     * @param percentile percentage from 0 to 100
+     * @return latency in nanoseconds, 0 if none were recorded
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("Percentile must be from 0 to 100: " + percentile);
+        // counts are read once each, so the total is taken from them
+        long[] snapshot = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            n += snapshot[i];
+        }
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) return Math.min(highest(i), max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * Prints the number of latencies, their mean, p50, p99, p99.9, and max, in
+     * milliseconds, on one line.
+     *
+     * @param out  stream to print to
+     * @param name what the latencies are
+     */
+    public void print(PrintStream out, String name) {
+        out.printf(Locale.ROOT, "%s: count=%d mean=%.3f ms p50=%.3f ms p99=%.3f ms p99.9=%.3f ms max=%.3f ms%n",
+                   name, getCount(), getMean() / 1e6, getPercentile(50) / 1e6, getPercentile(99) / 1e6,
+                   getPercentile(99.9) / 1e6, getMax() / 1e6);
+    }
+}
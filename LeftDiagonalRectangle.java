@@ -22,14 +22,22 @@ public class LeftDiagonalRectangle implements Shape {
     private double halfLength; // half length
     private double halfHeight; // half height
     // constants
-    private final int ANGLE = 225;
+    private static final int ANGLE = 225; // angle of rotation (in radians)
+    private static final double C = Math.cos(ANGLE);
+    private static final double S = Math.sin(ANGLE);
+    // unit rotated rectangle, clockwise top left: each coordinate is
+    // halfLength * LEN + halfHeight * HEIGHT
+    private static final double[] LEN_X = {-C, C, C, -C};
+    private static final double[] HEIGHT_X = {-S, -S, S, S};
+    private static final double[] LEN_Y = {-S, S, S, -S};
+    private static final double[] HEIGHT_Y = {C, C, -C, -C};
+    // scratch coordinates for drawing, one pair for each thread
+    private static final ThreadLocal<double[][]> SCRATCH =
+        ThreadLocal.withInitial(() -> new double[2][LEN_X.length]);
 
     // constructor
     public LeftDiagonalRectangle(double x, double y, double radius) {
-        this.x = x;
-        this.y = y;
-        this.halfLength = radius / 2;
-        this.halfHeight = radius / 4;
+        reset(x, y, radius);
     }
 
     // getters
@@ -60,28 +68,32 @@ public class LeftDiagonalRectangle implements Shape {
         // (x - r2x, y - r2y);
     // get array of x-coordinates to draw (clockwise bottom left)
     public double[] getXCoords() {
-        double c = Math.cos(ANGLE);
-        double s = Math.sin(ANGLE);
-        
-        double r1x = -halfLength * c - halfHeight * s;
-        double r2x =  halfLength * c - halfHeight * s;
-
-        double[] coords = {x + r1x, x + r2x, x - r1x, x - r2x};
+        double[] coords = new double[LEN_X.length];
+        getCoords(coords, new double[LEN_Y.length]);
         return coords;
     }
 
     // get array of y-coordinates to draw (clockwise bottom left)
     public double[] getYCoords() {
-        double c = Math.cos(ANGLE);
-        double s = Math.sin(ANGLE);
-        
-        double r1y = -halfLength * s + halfHeight * c;
-        double r2y =  halfLength * s + halfHeight * c;
-
-        double[] coords = {y + r1y, y + r2y, y - r1y, y - r2y};
+        double[] coords = new double[LEN_Y.length];
+        getCoords(new double[LEN_X.length], coords);
         return coords;
     }
 
+    // get number of coordinates to draw
+    public int getNumCoords() {
+        return LEN_X.length;
+    }
+
+    // copy coordinates to draw, scaled from unit rotated rectangle
+    public int getCoords(double[] xs, double[] ys) {
+        for (int i = 0; i < LEN_X.length; i++) {
+            xs[i] = x + halfLength * LEN_X[i] + halfHeight * HEIGHT_X[i];
+            ys[i] = y + halfLength * LEN_Y[i] + halfHeight * HEIGHT_Y[i];
+        }
+        return LEN_X.length;
+    }
+
     // setters
     // set x coordinate - center
     public void setX(double newX) {
@@ -103,8 +115,18 @@ public class LeftDiagonalRectangle implements Shape {
         halfHeight = newHeight / 4;
     }
 
-    // draw the shape
-    public void draw() {
-        StdDraw.filledPolygon(getXCoords(), getYCoords());
+    // set center, halflength, and halfheight, as in the constructor
+    public void reset(double newX, double newY, double radius) {
+        this.x = newX;
+        this.y = newY;
+        this.halfLength = radius / 2;
+        this.halfHeight = radius / 4;
+    }
+
+    // draw the shape with the renderer
+    public void draw(Renderer renderer) {
+        double[][] scratch = SCRATCH.get();
+        int n = getCoords(scratch[0], scratch[1]);
+        renderer.filledPolygon(scratch[0], scratch[1], n);
     }
 }
@@ -0,0 +1,31 @@
+/* *****************************************************************************
+ *  Compilation:  javac MappingReload.java
+ *
+ *  A MappingReload is a JDK Flight Recorder event for each load of a new
+ *  MappingTable by a MappingWatcher, lasting as long as the database is read,
+ *  whether it succeeded or not.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("eyetunes.MappingReload")
+@Label("Mapping Reload")
+@Description("The mappings database loaded into memory after it changed")
+@Category({"EyeTunes", "Mappings"})
+public final class MappingReload extends jdk.jfr.Event {
+    @Label("Database")
+    String database;
+
+    @Label("Succeeded")
+    boolean succeeded;
+
+    @Label("Error")
+    @Description("Why the reload failed, if it did")
+    String error;
+}
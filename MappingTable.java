@@ -0,0 +1,150 @@
+/* *****************************************************************************
+ *  Compilation:  javac MappingTable.java
+ *
+ *  A MappingTable holds the audiovisual mappings of the mappings database in
+ *  memory, so that graphics can be generated without querying the database.
+ *  The programvisuals table is loaded into arrays indexed by percussion and
+ *  program number (color id, ShapeType, and Quadrant), and the colornotes table
+ *  is loaded into an array of Color objects indexed by color id and pitch. The
+ *  tables are read once, and a MappingTable is never changed after loading.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import java.awt.Color;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Properties;
+
+public final class MappingTable {
+    // constants
+    private static final int MAXNUM = 128; // number of programs or pitches
+    private static final Color NO_COLOR = new Color(0, 0, 0); // unmapped color
+    private static final int SQLITE_OPEN_READONLY = 0x00000001; // sqlite3_open_v2 flag
+
+    // indexed by [percussion * 128 + program]
+    private final int[] programColors;          // id of color, -1 if none
+    private final ShapeType[] programShapes;    // shape, null if none
+    private final Quadrant[] programQuadrants;  // quadrant
+    // indexed by [color id * 128 + pitch]
+    private final Color[] noteColors;
+
+    // constructor
+    private MappingTable(int numColors) {
+        programColors = new int[2 * MAXNUM];
+        programShapes = new ShapeType[2 * MAXNUM];
+        programQuadrants = new Quadrant[2 * MAXNUM];
+        noteColors = new Color[Math.max(numColors, 1) * MAXNUM];
+        Arrays.fill(programColors, -1);
+        Arrays.fill(programQuadrants, Quadrant.N);
+        Arrays.fill(noteColors, NO_COLOR);
+    }
+
+    /**
+     * Returns an empty MappingTable, in which no program is mapped to a shape.
+     *
+     * @return empty MappingTable
+     */
+    public static MappingTable empty() {
+        return new MappingTable(0);
+    }
+
+    /**
+     * Loads both tables of the mappings database into a new MappingTable.
+     * The database is opened read-only, so any number of readers can share
+     * it. Colors are indexed by their id in the colors table, and shape and
+     * quadrant ids are matched to ShapeType and Quadrant once per load.
+     *
+     * @param url JDBC url of the mappings database
+     * @return loaded MappingTable
+     * @throws SQLException if the database could not be read
+     */
+    public static MappingTable load(String url) throws SQLException {
+        Connection connection = null;
+        try {
+            Properties config = new Properties();
+            config.setProperty("open_mode", String.valueOf(SQLITE_OPEN_READONLY));
+            connection = DriverManager.getConnection(url, config);
+            // read all tables in one transaction, so a write to the database
+            // between queries cannot mix old and new mappings
+            connection.setAutoCommit(false);
+            Statement statement = connection.createStatement();
+
+            // shape and quadrant ids to ShapeType and Quadrant
+            HashMap<Integer, ShapeType> shapes = new HashMap<Integer, ShapeType>();
+            ResultSet rs = statement.executeQuery("select id, name from shapes");
+            while (rs.next()) {
+                shapes.put(rs.getInt("id"), ShapeType.fromText(rs.getString("name")));
+            }
+            HashMap<Integer, Quadrant> quadrants = new HashMap<Integer, Quadrant>();
+            rs = statement.executeQuery("select id, name from quadrants");
+            while (rs.next()) {
+                quadrants.put(rs.getInt("id"), Quadrant.fromText(rs.getString("name")));
+            }
+            rs = statement.executeQuery("select max(id) from colors");
+            MappingTable table = new MappingTable(rs.next() ? rs.getInt(1) + 1 : 0);
+
+            // colornotes - color_id, note, r, g, b
+            rs = statement.executeQuery("select color_id, note, r, g, b from colornotes");
+            while (rs.next()) {
+                int color = rs.getInt("color_id");
+                int note = rs.getInt("note");
+                if (note < 0 || note >= MAXNUM || color < 0) continue;
+                table.noteColors[color * MAXNUM + note] =
+                new Color(rs.getInt("r"), rs.getInt("g"), rs.getInt("b"));
+            }
+
+            // programvisuals - percussion, program, color_id, shape_id, quadrant_id
+            rs = statement.executeQuery(
+            "select percussion, program, color_id, shape_id, quadrant_id from programvisuals");
+            while (rs.next()) {
+                int program = rs.getInt("program");
+                if (program < 0 || program >= MAXNUM) continue;
+                int i = index(rs.getBoolean("percussion"), program);
+                table.programColors[i] = rs.getInt("color_id");
+                table.programShapes[i] = shapes.get(rs.getInt("shape_id"));
+                Quadrant quadrant = quadrants.get(rs.getInt("quadrant_id"));
+                table.programQuadrants[i] = (quadrant == null) ? Quadrant.N : quadrant;
+            }
+            return table;
+        }
+        finally {
+            try {
+                if (connection != null)
+                    connection.close();
+            }
+            catch (SQLException e) {
+                // connection close failed
+                System.err.println(e.getMessage());
+            }
+        }
+    }
+
+    // index into the program arrays
+    private static int index(boolean percussion, int program) {
+        return (percussion ? MAXNUM : 0) + program;
+    }
+
+    // get shape of a program, null if the program has no shape
+    public ShapeType getShape(boolean percussion, int program) {
+        return programShapes[index(percussion, program)];
+    }
+
+    // get quadrant of a program
+    public Quadrant getQuadrant(boolean percussion, int program) {
+        return programQuadrants[index(percussion, program)];
+    }
+
+    // get color of a pitch played by a program (black if unmapped)
+    public Color getColor(boolean percussion, int program, int pitch) {
+        int color = programColors[index(percussion, program)];
+        if (color < 0 || color * MAXNUM >= noteColors.length) return NO_COLOR;
+        return noteColors[color * MAXNUM + pitch];
+    }
+}
@@ -0,0 +1,132 @@
+/* *****************************************************************************
+ *  Compilation:  javac MappingWatcher.java
+ *
+ *  A MappingWatcher holds the current MappingTable and reloads it whenever the
+ *  mappings database changes, so mappings can be tuned while music is playing.
+ *  A background thread checks the modification time and size of the database
+ *  file, loads a complete new MappingTable when either changes, and publishes
+ *  it with a single atomic reference swap. Readers (graphics()) only ever get
+ *  the current MappingTable, which is never changed after loading, so they
+ *  never wait on the database and never see a half-loaded mapping. If a reload
+ *  fails, the previous MappingTable is kept and the reload is tried again.
+ *  Each reload is recorded as a MappingReload JDK Flight Recorder event.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicReference;
+import jdk.jfr.FlightRecorder;
+
+public final class MappingWatcher implements Runnable {
+    // constants
+    private static final long DEFAULT_POLL_MILLIS = 500; // time between checks
+
+    // instance variables
+    private final AtomicReference<MappingTable> current; // current snapshot
+    private final File file;        // mappings database file
+    private final String url;       // JDBC url of the mappings database
+    private final long pollMillis;  // time between checks
+    private long lastModified;      // modification time of last load
+    private long lastLength;        // file size of last load
+    private volatile boolean running; // false stops the watcher thread
+    private Thread thread;          // watcher thread
+
+    // constructor
+    public MappingWatcher(String filename, MappingTable initial) {
+        this(filename, initial, DEFAULT_POLL_MILLIS);
+    }
+
+    // constructor
+    public MappingWatcher(String filename, MappingTable initial, long pollMillis) {
+        this.current = new AtomicReference<MappingTable>(initial);
+        this.file = new File(filename);
+        this.url = "jdbc:sqlite:" + filename;
+        this.pollMillis = pollMillis;
+        this.lastModified = file.lastModified();
+        this.lastLength = file.length();
+    }
+
+    /**
+     * Returns the current MappingTable. Never blocks; callers should get the
+     * MappingTable once per frame so that a frame uses a single snapshot.
+     *
+     * @return current MappingTable
+     */
+    public MappingTable current() {
+        return current.get();
+    }
+
+    // start watching the database file on a background (daemon) thread
+    public synchronized void start() {
+        if (thread != null) return;
+        running = true;
+        thread = new Thread(this, "EyeTunes-mappings");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // stop watching the database file
+    public synchronized void close() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    // watcher thread - check database file, reload if changed
+    public void run() {
+        while (running) {
+            try {
+                Thread.sleep(pollMillis);
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+            long modified = file.lastModified();
+            long length = file.length();
+            if (modified != lastModified || length != lastLength) {
+                if (reload()) {
+                    lastModified = modified;
+                    lastLength = length;
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads a new MappingTable from the database and, if it loaded, swaps
+     * it in as the current MappingTable.
+     *
+     * @return true if the mappings were reloaded
+     */
+    public boolean reload() {
+        // Flight Recorder event, only created once Flight Recorder has been started
+        MappingReload event = FlightRecorder.isInitialized() ? new MappingReload() : null;
+        if (event != null) event.begin();
+        boolean succeeded = false;
+        String error = null;
+        try {
+            current.set(MappingTable.load(url));
+            succeeded = true;
+            return true;
+        }
+        catch (SQLException e) {
+            // keep previous mappings, try again on next check
+            System.err.println(e.getMessage());
+            error = e.getMessage();
+            return false;
+        }
+        finally {
+            if (event != null && event.shouldCommit()) {
+                event.database = file.getPath();
+                event.succeeded = succeeded;
+                event.error = error;
+                event.commit();
+            }
+        }
+    }
+}
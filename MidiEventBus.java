@@ -0,0 +1,179 @@
+/* *****************************************************************************
+ *  Compilation:  javac MidiEventBus.java
+ *
+ *  A MidiEventBus routes MIDI events (packed as in MidiEventRing) to handlers
+ *  for each type of event: NoteOn, NoteOff, ProgramChange, ControlChange,
+ *  PitchBend, and Meta. Handlers are registered once, before events arrive.
+ *  Each event is routed through a table of 16 routes indexed by the command
+ *  nibble of its status byte (status >> 4), so routing does no comparisons
+ *  and creates no objects. A NoteOn with velocity 0 is routed to the NoteOff
+ *  handlers. Events of other types are ignored. The same MidiEventBus is used
+ *  for MIDI keyboard controller and MIDI file (sequencer) input.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import java.util.Arrays;
+
+public final class MidiEventBus {
+    // handler types
+    public interface NoteOnHandler {
+        void noteOn(int channel, int pitch, int velocity, long timeStamp);
+    }
+
+    public interface NoteOffHandler {
+        void noteOff(int channel, int pitch, int velocity, long timeStamp);
+    }
+
+    public interface ProgramChangeHandler {
+        void programChange(int channel, int program, long timeStamp);
+    }
+
+    public interface ControlChangeHandler {
+        void controlChange(int channel, int controller, int value, long timeStamp);
+    }
+
+    public interface PitchBendHandler {
+        // value is 0 to 16383, 8192 is no bend
+        void pitchBend(int channel, int value, long timeStamp);
+    }
+
+    public interface MetaHandler {
+        void meta(int type, long timeStamp);
+    }
+
+    // one entry of the routing table
+    private interface Route {
+        void route(int status, int data1, int data2, long timeStamp);
+    }
+
+    // registered handlers
+    private NoteOnHandler[] noteOnHandlers = new NoteOnHandler[0];
+    private NoteOffHandler[] noteOffHandlers = new NoteOffHandler[0];
+    private ProgramChangeHandler[] programChangeHandlers = new ProgramChangeHandler[0];
+    private ControlChangeHandler[] controlChangeHandlers = new ControlChangeHandler[0];
+    private PitchBendHandler[] pitchBendHandlers = new PitchBendHandler[0];
+    private MetaHandler[] metaHandlers = new MetaHandler[0];
+
+    // routes indexed by command nibble (status >> 4)
+    private final Route[] routes = new Route[16];
+
+    // constructor
+    public MidiEventBus() {
+        Route ignore = (status, data1, data2, timeStamp) -> { };
+        Arrays.fill(routes, ignore);
+        routes[0x8] = this::routeNoteOff;
+        routes[0x9] = this::routeNoteOn;
+        routes[0xB] = this::routeControlChange;
+        routes[0xC] = this::routeProgramChange;
+        routes[0xE] = this::routePitchBend;
+        routes[0xF] = this::routeMeta;
+    }
+
+    // register handlers
+    public void onNoteOn(NoteOnHandler handler) {
+        noteOnHandlers = add(noteOnHandlers, handler);
+    }
+
+    public void onNoteOff(NoteOffHandler handler) {
+        noteOffHandlers = add(noteOffHandlers, handler);
+    }
+
+    public void onProgramChange(ProgramChangeHandler handler) {
+        programChangeHandlers = add(programChangeHandlers, handler);
+    }
+
+    public void onControlChange(ControlChangeHandler handler) {
+        controlChangeHandlers = add(controlChangeHandlers, handler);
+    }
+
+    public void onPitchBend(PitchBendHandler handler) {
+        pitchBendHandlers = add(pitchBendHandlers, handler);
+    }
+
+    public void onMeta(MetaHandler handler) {
+        metaHandlers = add(metaHandlers, handler);
+    }
+
+    // copy of handlers with one more handler
+    private static <T> T[] add(T[] handlers, T handler) {
+        T[] copy = Arrays.copyOf(handlers, handlers.length + 1);
+        copy[handlers.length] = handler;
+        return copy;
+    }
+
+    /**
+     * Routes one packed event to its handlers.
+     *
+     * @param event     packed event (see MidiEventRing)
+     * @param timeStamp time stamp in microseconds
+     */
+    public void dispatch(int event, long timeStamp) {
+        int status = MidiEventRing.getStatus(event);
+        routes[status >>> 4].route(status, MidiEventRing.getData1(event),
+                                   MidiEventRing.getData2(event), timeStamp);
+    }
+
+    /**
+     * Routes a batch of packed events to their handlers, in order.
+     *
+     * @param events     packed events (see MidiEventRing)
+     * @param timeStamps time stamps in microseconds
+     * @param count      number of events
+     */
+    public void dispatch(int[] events, long[] timeStamps, int count) {
+        for (int i = 0; i < count; i++) {
+            dispatch(events[i], timeStamps[i]);
+        }
+    }
+
+    // routes
+    private void routeNoteOn(int status, int data1, int data2, long timeStamp) {
+        if (data2 == 0) {
+            routeNoteOff(status, data1, data2, timeStamp);
+            return;
+        }
+        int channel = status & 0x0F;
+        for (NoteOnHandler handler : noteOnHandlers) {
+            handler.noteOn(channel, data1, data2, timeStamp);
+        }
+    }
+
+    private void routeNoteOff(int status, int data1, int data2, long timeStamp) {
+        int channel = status & 0x0F;
+        for (NoteOffHandler handler : noteOffHandlers) {
+            handler.noteOff(channel, data1, data2, timeStamp);
+        }
+    }
+
+    private void routeControlChange(int status, int data1, int data2, long timeStamp) {
+        int channel = status & 0x0F;
+        for (ControlChangeHandler handler : controlChangeHandlers) {
+            handler.controlChange(channel, data1, data2, timeStamp);
+        }
+    }
+
+    private void routeProgramChange(int status, int data1, int data2, long timeStamp) {
+        int channel = status & 0x0F;
+        for (ProgramChangeHandler handler : programChangeHandlers) {
+            handler.programChange(channel, data1, timeStamp);
+        }
+    }
+
+    private void routePitchBend(int status, int data1, int data2, long timeStamp) {
+        int channel = status & 0x0F;
+        int value = (data2 << 7) | data1;
+        for (PitchBendHandler handler : pitchBendHandlers) {
+            handler.pitchBend(channel, value, timeStamp);
+        }
+    }
+
+    private void routeMeta(int status, int data1, int data2, long timeStamp) {
+        // only MetaMessages use status 0xF_ in the event queue
+        if (status != MidiEventRing.META) return;
+        for (MetaHandler handler : metaHandlers) {
+            handler.meta(data1, timeStamp);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/* *****************************************************************************
+ *  Compilation:  javac MidiEventReceived.java
+ *
+ *  A MidiEventReceived is a JDK Flight Recorder event for each MIDI message a
+ *  receiver adds to the queue of MIDI events (keyboard controller or
+ *  Sequencer), emitted on the thread that received it. Its data bytes are the
+ *  pitch and velocity of a note, or the number and value of a controller.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("eyetunes.MidiEventReceived")
+@Label("MIDI Event Received")
+@Description("A MIDI message added to the queue of MIDI events")
+@Category({"EyeTunes", "MIDI"})
+@StackTrace(false)
+public final class MidiEventReceived extends jdk.jfr.Event {
+    @Label("Command")
+    @Description("Command of the message (NOTE_ON is 144), 255 for a MetaMessage")
+    int command;
+
+    @Label("Channel")
+    int channel;
+
+    @Label("Pitch")
+    @Description("First data byte: pitch of a note, or controller number")
+    int data1;
+
+    @Label("Velocity")
+    @Description("Second data byte: velocity of a note, or controller value")
+    int data2;
+
+    @Label("Queue Depth")
+    @Description("Number of MIDI events waiting to be read after this one")
+    int queueDepth;
+
+    @Label("Queued")
+    @Description("False if the message was dropped because the queue was full")
+    boolean queued;
+}
@@ -0,0 +1,188 @@
+/* *****************************************************************************
+ *  Compilation:  javac MidiEventRing.java
+ *
+ *  A MidiEventRing is a bounded queue of MIDI events between one producer
+ *  thread (the MIDI transmitter thread) and one consumer thread (the thread
+ *  that reads MIDI messages). Its slots are allocated once, in a ring whose
+ *  size is a power of two, and each event is stored as primitives: the status,
+ *  data1, and data2 bytes packed into an int, and the time stamp in a long.
+ *  The consumer removes all available events at once with drain().
+ *
+ *  When the ring is full, the Overflow policy decides what the producer does:
+ *  BLOCK waits until the consumer makes room, DROP_OLDEST overwrites the oldest
+ *  event, and DROP_NEWEST discards the new event. The number of events in the
+ *  ring and the number of dropped events can be read at any time.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+public final class MidiEventRing {
+    // what to do when the ring is full
+    public enum Overflow { BLOCK, DROP_OLDEST, DROP_NEWEST }
+
+    // constants
+    public static final int META = 0xFF; // status of a MetaMessage event (data1 is its type)
+    private static final long BLOCK_NANOS = 100000L; // time to wait for room (0.1 ms)
+
+    // instance variables
+    private final int mask;            // capacity - 1
+    private final int[] events;        // status | data1 << 8 | data2 << 16
+    private final long[] timeStamps;   // time stamp in microseconds
+    private final AtomicLong head = new AtomicLong(); // next event to read
+    private final AtomicLong tail = new AtomicLong(); // next event to write
+    private final AtomicLong dropped = new AtomicLong(); // number of dropped events
+    private volatile Overflow overflow; // policy when full
+    private volatile Thread waiting;   // consumer waiting for events, if any
+
+    // constructor
+    public MidiEventRing(int capacity, Overflow overflow) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        this.mask = capacity - 1;
+        this.events = new int[capacity];
+        this.timeStamps = new long[capacity];
+        this.overflow = overflow;
+    }
+
+    // helpers to pack and unpack an event
+    public static int pack(int status, int data1, int data2) {
+        return (status & 0xFF) | ((data1 & 0xFF) << 8) | ((data2 & 0xFF) << 16);
+    }
+
+    public static int getStatus(int event) {
+        return event & 0xFF;
+    }
+
+    public static int getData1(int event) {
+        return (event >>> 8) & 0xFF;
+    }
+
+    public static int getData2(int event) {
+        return (event >>> 16) & 0xFF;
+    }
+
+    // set policy when full
+    public void setOverflow(Overflow overflow) {
+        this.overflow = overflow;
+    }
+
+    // get policy when full
+    public Overflow getOverflow() {
+        return overflow;
+    }
+
+    // get maximum number of events
+    public int capacity() {
+        return mask + 1;
+    }
+
+    // get number of events waiting to be read
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, mask + 1));
+    }
+
+    // check if there are no events waiting to be read
+    public boolean isEmpty() {
+        return tail.get() == head.get();
+    }
+
+    // get number of events dropped because the ring was full
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Adds an event (producer thread only). If the ring is full, follows the
+     * Overflow policy.
+     *
+     * @param status    status byte (command and channel)
+     * @param data1     first data byte
+     * @param data2     second data byte
+     * @param timeStamp time stamp in microseconds
+     * @return false if the new event was dropped
+     */
+    public boolean offer(int status, int data1, int data2, long timeStamp) {
+        long t = tail.get();
+        while (true) {
+            long h = head.get();
+            if (t - h <= mask) break;
+            Overflow policy = overflow;
+            if (policy == Overflow.DROP_NEWEST) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            else if (policy == Overflow.DROP_OLDEST) {
+                if (head.compareAndSet(h, h + 1)) dropped.incrementAndGet();
+            }
+            else {
+                LockSupport.parkNanos(this, BLOCK_NANOS);
+            }
+        }
+        int i = (int) t & mask;
+        events[i] = pack(status, data1, data2);
+        timeStamps[i] = timeStamp;
+        tail.set(t + 1);
+
+        // wake consumer if it is waiting
+        Thread consumer = waiting;
+        if (consumer != null) LockSupport.unpark(consumer);
+        return true;
+    }
+
+    /**
+     * Removes as many events as fit in the given arrays (consumer thread only),
+     * copying them in FIFO order. If the ring is empty, waits up to timeoutNanos
+     * for an event to arrive.
+     *
+     * @param dstEvents     packed events
+     * @param dstTimeStamps time stamps
+     * @param timeoutNanos  max time to wait if empty (0 to not wait)
+     * @return number of events removed
+     */
+    public int drain(int[] dstEvents, long[] dstTimeStamps, long timeoutNanos) {
+        return drain(dstEvents, dstTimeStamps, 0, Math.min(dstEvents.length, dstTimeStamps.length), timeoutNanos);
+    }
+
+    /**
+     * Removes up to max events (consumer thread only), copying them into the
+     * given arrays from index offset in FIFO order. If the ring is empty, waits
+     * up to timeoutNanos for an event to arrive.
+     *
+     * @param dstEvents     packed events
+     * @param dstTimeStamps time stamps
+     * @param offset        index of the first event copied
+     * @param max           max number of events removed
+     * @param timeoutNanos  max time to wait if empty (0 to not wait)
+     * @return number of events removed
+     */
+    public int drain(int[] dstEvents, long[] dstTimeStamps, int offset, int max, long timeoutNanos) {
+        if (isEmpty() && timeoutNanos > 0) {
+            waiting = Thread.currentThread();
+            if (isEmpty()) LockSupport.parkNanos(this, timeoutNanos);
+            waiting = null;
+        }
+        while (true) {
+            long h = head.get();
+            int n = (int) Math.min(tail.get() - h, max);
+            if (n <= 0) return 0;
+            for (int k = 0; k < n; k++) {
+                int i = (int) (h + k) & mask;
+                dstEvents[offset + k] = events[i];
+                dstTimeStamps[offset + k] = timeStamps[i];
+            }
+            // the producer may have dropped (and overwritten) the oldest events
+            // while they were copied; if so, copy again from the new head
+            if (head.compareAndSet(h, h + n)) return n;
+        }
+    }
+
+    // remove all events
+    public void clear() {
+        head.set(tail.get());
+    }
+}
@@ -0,0 +1,150 @@
+/* *****************************************************************************
+ *  Compilation:  javac MidiInput.java
+ *
+ *  A MidiInput is one live source of MIDI messages, such as a keyboard, a pad
+ *  controller, or a drum brain: the Transmitter that sends its messages (and
+ *  the MidiDevice it belongs to, if it is hardware), a MidiEventRing that its
+ *  messages are queued in by the thread they arrive on, and the statistics of
+ *  the source. Each source has its own ring, so that each ring still has one
+ *  producer thread, and a MidiMerger merges the rings in time order.
+ *
+ *  The channels of a source's messages can be moved by a channel offset (for
+ *  example so that two controllers that both send on channel 0 are drawn with
+ *  different programs). The time stamps of a source's messages are mapped to
+ *  the receiving clock: a device's time stamps count from a time of its own,
+ *  so the smallest difference seen between the time a message was received
+ *  and its time stamp is added to each time stamp. A message without a time
+ *  stamp (-1) is stamped with the time it was received.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import javax.sound.midi.MidiDevice;
+import javax.sound.midi.Transmitter;
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class MidiInput {
+    // constants
+    public static final int DEFAULT_CAPACITY = 1024; // max number of queued events (power of two)
+
+    // instance variables
+    private final String name;             // name of the source
+    private final MidiDevice device;       // hardware device, null for a virtual source
+    private final Transmitter transmitter; // sends the source's messages
+    private final MidiEventRing events;    // queued events of the source
+    private volatile int channelOffset = 0; // added to the channel of each message
+    private volatile long clockOffset = Long.MAX_VALUE; // receiving time - time stamp (set by producer)
+    private final AtomicLong received = new AtomicLong(); // number of events received
+    private final AtomicLong late = new AtomicLong();     // number of events merged out of order
+
+    // constructor, for a virtual source (see VirtualTransmitter)
+    public MidiInput(String name, Transmitter transmitter) {
+        this(name, null, transmitter);
+    }
+
+    /**
+     * Creates the MidiInput of a source.
+     *
+     * @param name        name of the source
+     * @param device      hardware device of the source, or null
+     * @param transmitter Transmitter that sends the source's messages
+     */
+    public MidiInput(String name, MidiDevice device, Transmitter transmitter) {
+        this.name = name;
+        this.device = device;
+        this.transmitter = transmitter;
+        this.events = new MidiEventRing(DEFAULT_CAPACITY, MidiEventRing.Overflow.DROP_OLDEST);
+    }
+
+    // getters
+    public String getName() {
+        return name;
+    }
+
+    public Transmitter getTransmitter() {
+        return transmitter;
+    }
+
+    // get queued events of the source
+    public MidiEventRing getEvents() {
+        return events;
+    }
+
+    public int getChannelOffset() {
+        return channelOffset;
+    }
+
+    // get number of events received
+    public long getReceived() {
+        return received.get();
+    }
+
+    // get number of events dropped because the queue was full
+    public long getDropped() {
+        return events.getDropped();
+    }
+
+    // get number of events that arrived too late to be merged in time order
+    public long getLate() {
+        return late.get();
+    }
+
+    // get difference between the receiving clock and the device's time stamps
+    // in microseconds, or Long.MAX_VALUE before the first time stamp
+    public long getClockOffset() {
+        return clockOffset;
+    }
+
+    // set number added to the channel of each message (wrapping around 16 channels)
+    public void setChannelOffset(int channelOffset) {
+        this.channelOffset = channelOffset;
+    }
+
+    // check if the source is still sending messages
+    public boolean isOpen() {
+        if (device != null) return device.isOpen();
+        if (transmitter instanceof VirtualTransmitter) return ((VirtualTransmitter) transmitter).isOpen();
+        return true;
+    }
+
+    // stop receiving messages from the source
+    public void close() {
+        transmitter.close();
+        if (device != null && device.isOpen()) device.close();
+    }
+
+    /**
+     * Moves the channel of a status byte by the channel offset. System and
+     * meta statuses (0xF0 and up) have no channel and are returned unchanged.
+     *
+     * @param status status byte (command and channel)
+     * @return status byte with the new channel
+     */
+    public int mapStatus(int status) {
+        if (status >= 0xF0) return status;
+        return (status & 0xF0) | ((status + channelOffset) & 0x0F);
+    }
+
+    /**
+     * Maps the time stamp of a message received from the source to the
+     * receiving clock, and counts the message (thread that receives the
+     * source's messages only).
+     *
+     * @param timeStamp time stamp of the message, -1 if none
+     * @param time      time the message was received, on the receiving clock
+     * @return time of the message on the receiving clock
+     */
+    public long receive(long timeStamp, long time) {
+        received.incrementAndGet();
+        if (timeStamp < 0) return time;
+        long offset = time - timeStamp;
+        if (offset < clockOffset) clockOffset = offset;
+        return timeStamp + clockOffset;
+    }
+
+    // count an event that arrived too late to be merged in time order (MidiMerger only)
+    void countLate() {
+        late.incrementAndGet();
+    }
+}
@@ -0,0 +1,193 @@
+/* *****************************************************************************
+ *  Compilation:  javac MidiMerger.java
+ *
+ *  A MidiMerger merges the events of several live MIDI sources (MidiInputs)
+ *  into one stream in time stamp order, for the one thread that reads MIDI
+ *  events. Each source queues its events in a MidiEventRing of its own; the
+ *  reading thread moves them into a buffer per source and repeatedly takes
+ *  the earliest first event of all sources, so the events of each source stay
+ *  in the order they arrived.
+ *
+ *  Because an event from one source can arrive a little after a later event
+ *  from another, events are held for a small reorder window: an event is
+ *  passed on only once the receiving clock is window microseconds past its
+ *  time stamp. An event that still arrives after a later event has been
+ *  passed on is passed on at once, and counted as late for its source. With a
+ *  single source nothing needs reordering, so its events are not held.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+public final class MidiMerger {
+    // instance variables
+    private final MidiInput[] inputs;      // sources merged
+    private final LongSupplier clock;      // receiving clock, in microseconds
+    private volatile long window;          // time events are held for, in microseconds
+    private volatile Thread waiting;       // reading thread waiting for events, if any
+
+    // events moved from each source's ring, from starts[i] to ends[i] - 1 (reading thread only)
+    private final int[][] events;
+    private final long[][] timeStamps;
+    private final int[] starts;
+    private final int[] ends;
+    private long last = Long.MIN_VALUE;    // time stamp of the last event passed on
+
+    /**
+     * Creates a MidiMerger.
+     *
+     * @param inputs sources to merge
+     * @param clock  receiving clock that time stamps are on, in microseconds
+     * @param window time events are held for, in microseconds
+     */
+    public MidiMerger(List<MidiInput> inputs, LongSupplier clock, long window) {
+        if (inputs.isEmpty()) throw new IllegalArgumentException("No MIDI inputs to merge");
+        if (window < 0) throw new IllegalArgumentException("Reorder window must not be negative: " + window);
+        this.inputs = inputs.toArray(new MidiInput[0]);
+        this.clock = clock;
+        this.window = window;
+        events = new int[this.inputs.length][];
+        timeStamps = new long[this.inputs.length][];
+        for (int i = 0; i < this.inputs.length; i++) {
+            int capacity = this.inputs[i].getEvents().capacity();
+            events[i] = new int[capacity];
+            timeStamps[i] = new long[capacity];
+        }
+        starts = new int[this.inputs.length];
+        ends = new int[this.inputs.length];
+    }
+
+    // set time events are held for, in microseconds
+    public void setWindow(long window) {
+        if (window < 0) throw new IllegalArgumentException("Reorder window must not be negative: " + window);
+        this.window = window;
+    }
+
+    // get time events are held for, in microseconds
+    public long getWindow() {
+        return window;
+    }
+
+    // set policy when the queue of a source is full
+    public void setOverflow(MidiEventRing.Overflow overflow) {
+        for (MidiInput input : inputs) input.getEvents().setOverflow(overflow);
+    }
+
+    // get number of events waiting to be passed on
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < inputs.length; i++) {
+            size += inputs[i].getEvents().size() + Math.max(0, ends[i] - starts[i]);
+        }
+        return size;
+    }
+
+    // check if there are no events waiting to be passed on
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // get number of events dropped because the queue of a source was full
+    public long getDropped() {
+        long dropped = 0;
+        for (MidiInput input : inputs) dropped += input.getDropped();
+        return dropped;
+    }
+
+    // wake the reading thread if it is waiting (thread that queued an event)
+    public void signal() {
+        Thread reader = waiting;
+        if (reader != null) LockSupport.unpark(reader);
+    }
+
+    /**
+     * Passes on up to max events (reading thread only), copying them into the
+     * given arrays in time stamp order. If no event can be passed on yet, waits
+     * up to timeoutNanos for one.
+     *
+     * @param dstEvents     packed events
+     * @param dstTimeStamps time stamps
+     * @param timeoutNanos  max time to wait if no event can be passed on
+     * @return number of events passed on
+     */
+    public int drain(int[] dstEvents, long[] dstTimeStamps, long timeoutNanos) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (true) {
+            collect();
+            long now = clock.getAsLong();
+            long horizon = (inputs.length == 1) ? Long.MAX_VALUE : now - window;
+            int n = merge(dstEvents, dstTimeStamps, horizon);
+            if (n > 0) return n;
+
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return 0;
+            // wait for a new event, or until the earliest held event leaves the window
+            long earliest = earliest();
+            if (earliest != Long.MAX_VALUE)
+                remaining = Math.min(remaining, (earliest - horizon) * 1000);
+            waiting = Thread.currentThread();
+            if (queuesEmpty()) LockSupport.parkNanos(this, Math.max(remaining, 1000));
+            waiting = null;
+        }
+    }
+
+    // move the events queued by each source into its buffer
+    private void collect() {
+        for (int i = 0; i < inputs.length; i++) {
+            if (starts[i] > 0) {
+                int n = ends[i] - starts[i];
+                System.arraycopy(events[i], starts[i], events[i], 0, n);
+                System.arraycopy(timeStamps[i], starts[i], timeStamps[i], 0, n);
+                starts[i] = 0;
+                ends[i] = n;
+            }
+            ends[i] += inputs[i].getEvents().drain(events[i], timeStamps[i], ends[i],
+                                                   events[i].length - ends[i], 0);
+        }
+    }
+
+    // check if no source has queued events that are not yet in its buffer
+    private boolean queuesEmpty() {
+        for (MidiInput input : inputs) {
+            if (!input.getEvents().isEmpty()) return false;
+        }
+        return true;
+    }
+
+    // time stamp of the earliest buffered event, Long.MAX_VALUE if none
+    private long earliest() {
+        long earliest = Long.MAX_VALUE;
+        for (int i = 0; i < inputs.length; i++) {
+            if (starts[i] < ends[i]) earliest = Math.min(earliest, timeStamps[i][starts[i]]);
+        }
+        return earliest;
+    }
+
+    // pass on buffered events with time stamps up to horizon, earliest first
+    private int merge(int[] dstEvents, long[] dstTimeStamps, long horizon) {
+        int max = Math.min(dstEvents.length, dstTimeStamps.length);
+        int n = 0;
+        while (n < max) {
+            // source whose first event is earliest (the first source, if tied)
+            int next = -1;
+            for (int i = 0; i < inputs.length; i++) {
+                if (starts[i] < ends[i] && (next < 0 || timeStamps[i][starts[i]] < timeStamps[next][starts[next]]))
+                    next = i;
+            }
+            if (next < 0) break;
+            long timeStamp = timeStamps[next][starts[next]];
+            if (timeStamp > horizon) break;
+            if (timeStamp < last) inputs[next].countLate();
+            else last = timeStamp;
+            dstEvents[n] = events[next][starts[next]];
+            dstTimeStamps[n] = timeStamp;
+            starts[next]++;
+            n++;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,218 @@
+/* *****************************************************************************
+ *  Compilation:  javac MidiTracer.java
+ *
+ *  A MidiTracer prints a line for each MIDI event read, without slowing down
+ *  the thread that reads them. The reading thread only copies each batch of
+ *  events it reads into a MidiEventRing of compact binary records: the status
+ *  and data bytes packed into an int and the time received in a long. Events
+ *  are traced once read rather than when received, so that the ring has one
+ *  producer however many MIDI inputs (each sending on a thread of its own)
+ *  are merged, and each line shows the channel the event is drawn on. A
+ *  background thread removes the records in batches, formats them into one
+ *  reused buffer, and writes each batch to a buffered stream (a file or
+ *  stdout). Command names come from an array indexed by command, so nothing
+ *  is looked up by reflection or boxed.
+ *
+ *  If the background thread falls behind and the ring fills up, new records
+ *  are dropped rather than making the reading thread wait; the number of
+ *  dropped records is printed in the trace when records are dropped, and on
+ *  close().
+ *
+ *  Only events that are queued to be read are traced, so system messages
+ *  (status 0xF0 and up, which some controllers output continuously) and
+ *  SysexMessages are not.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import javax.sound.midi.ShortMessage;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+public final class MidiTracer implements Runnable {
+    // constants
+    private static final int CAPACITY = 8192; // max number of records waiting (power of two)
+    private static final long POLL_NANOS = 100000000L; // max time to wait for a record (100 ms)
+    // names of channel commands, by (command >> 4) - 8
+    private static final String[] COMMANDS = { "NOTE_OFF", "NOTE_ON", "POLY_PRESSURE", "CONTROL_CHANGE",
+                                               "PROGRAM_CHANGE", "CHANNEL_PRESSURE", "PITCH_BEND" };
+
+    // instance variables
+    private final MidiEventRing records = new MidiEventRing(CAPACITY, MidiEventRing.Overflow.DROP_NEWEST);
+    private final Writer out;           // buffered trace
+    private final boolean closeOut;     // true if the stream is closed with the tracer
+    // records removed at once, and formatted lines (background thread only)
+    private final int[] batchRecords = new int[CAPACITY];
+    private final long[] batchTimes = new long[CAPACITY];
+    private final StringBuilder line = new StringBuilder(128);
+    private char[] chars = new char[128];
+    private long reportedDropped = 0;   // dropped records already printed (background thread only)
+    private volatile boolean running = false;
+    private boolean closed = false;     // true once close() has written the end of the trace
+    private Thread thread;
+
+    /**
+     * Creates a MidiTracer that writes to a stream.
+     *
+     * @param stream   stream to write the trace to, for example System.out
+     * @param closeOut true if the stream is closed when the tracer is closed
+     */
+    public MidiTracer(OutputStream stream, boolean closeOut) {
+        this.out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 1 << 16);
+        this.closeOut = closeOut;
+    }
+
+    /**
+     * Static helper method. Creates a MidiTracer that writes to a file, or to
+     * stdout if the filename is -.
+     *
+     * @param filename name of the file to write the trace to, or -
+     * @return MidiTracer
+     * @throws IOException if the file cannot be created
+     */
+    public static MidiTracer open(String filename) throws IOException {
+        if (filename.equals("-")) return new MidiTracer(System.out, false);
+        return new MidiTracer(new FileOutputStream(filename), true);
+    }
+
+    /**
+     * Static helper method. Returns the name of the command of a status byte,
+     * for example NOTE_ON for 0x90 to 0x9F.
+     *
+     * @param status status byte, or MidiEventRing.META
+     * @return name of the command
+     */
+    public static String commandName(int status) {
+        if (status == MidiEventRing.META) return "META";
+        if (status >= ShortMessage.NOTE_OFF && status < 0xF0) return COMMANDS[(status >> 4) - 8];
+        return "SYSTEM";
+    }
+
+    // get number of records dropped because the trace fell behind
+    public long getDropped() {
+        return records.getDropped();
+    }
+
+    /**
+     * Adds a record of each event of a batch read (reading thread only). Never
+     * waits.
+     *
+     * @param events     packed events (see MidiEventRing)
+     * @param timeStamps times they were received, in microseconds
+     * @param count      number of events
+     */
+    public void trace(int[] events, long[] timeStamps, int count) {
+        for (int i = 0; i < count; i++) {
+            int event = events[i];
+            records.offer(MidiEventRing.getStatus(event), MidiEventRing.getData1(event),
+                          MidiEventRing.getData2(event), timeStamps[i]);
+        }
+    }
+
+    // start writing the trace on a background (daemon) thread
+    public synchronized void start() {
+        if (thread != null) return;
+        running = true;
+        thread = new Thread(this, "EyeTunes-trace");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // write the records still waiting, the number dropped, and stop writing the trace
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        running = false;
+        if (thread != null) {
+            try {
+                thread.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+        try {
+            write(records.drain(batchRecords, batchTimes, 0));
+            if (getDropped() > 0) {
+                out.write("Trace records dropped in total: " + getDropped() + "\n");
+            }
+            out.flush();
+            if (closeOut) out.close();
+        }
+        catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    // background thread - write records in batches
+    public void run() {
+        try {
+            while (running) {
+                int n = records.drain(batchRecords, batchTimes, POLL_NANOS);
+                if (n == 0) continue;
+                write(n);
+                long dropped = getDropped();
+                if (dropped != reportedDropped) {
+                    out.write("Trace records dropped: " + (dropped - reportedDropped) + "\n");
+                    reportedDropped = dropped;
+                }
+                out.flush();
+            }
+        }
+        catch (IOException e) {
+            // stop tracing rather than playing
+            System.err.println(e.getMessage());
+            running = false;
+        }
+    }
+
+    // format and write the first n records of the batch
+    private void write(int n) throws IOException {
+        for (int i = 0; i < n; i++) {
+            format(batchRecords[i], batchTimes[i]);
+            int length = line.length();
+            if (length > chars.length) chars = new char[Math.max(length, 2 * chars.length)];
+            line.getChars(0, length, chars, 0);
+            out.write(chars, 0, length);
+        }
+    }
+
+    // format one record into line, as seconds.microseconds COMMAND fields
+    private void format(int record, long time) {
+        int status = MidiEventRing.getStatus(record);
+        int data1 = MidiEventRing.getData1(record);
+        int data2 = MidiEventRing.getData2(record);
+        line.setLength(0);
+        if (time < 0) {
+            line.append('-');
+            time = -time;
+        }
+        line.append(time / 1000000).append('.');
+        long micros = time % 1000000;
+        for (long digit = 100000; digit > 1 && micros < digit; digit /= 10) line.append('0');
+        line.append(micros).append(' ').append(commandName(status));
+
+        int command = status & 0xF0;
+        if (status == MidiEventRing.META)
+            line.append(" Type: ").append(data1);
+        else if (status < 0xF0) {
+            line.append(" (").append(command).append(") Channel: ").append(status & 0x0F);
+            if (command == ShortMessage.NOTE_ON || command == ShortMessage.NOTE_OFF)
+                line.append(" Pitch: ").append(data1).append(" Velocity: ").append(data2);
+            else if (command == ShortMessage.CONTROL_CHANGE)
+                line.append(" Number: ").append(data1).append(" Data2: ").append(data2);
+            else if (command == ShortMessage.PROGRAM_CHANGE)
+                line.append(" Program: ").append(data1);
+            else
+                line.append(" Data1: ").append(data1).append(" Data2: ").append(data2);
+        }
+        line.append('\n');
+    }
+}
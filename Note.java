@@ -2,48 +2,81 @@
  *  Compilation:  javac Note.java
  *  Execution:    java Note
  *
- *  The Note class represents individual notes in a song, with the instance
- *  variables program (program number, determines color, shape, and quadrant),
- *  channel (channel number, determines percussion), pitch (pitch of the note,
- *  determines position and brightness), and velocity (volume, determines size).
- *  Note has four getter methods that return the values of these fields.
- * 
+ *  The Note class represents individual notes in a song, packed into a single
+ *  long so that notes can be stored in primitive arrays without creating an
+ *  object for every note. A packed note holds the program (program number,
+ *  determines color, shape, and quadrant), channel (channel number, determines
+ *  percussion), pitch (pitch of the note, determines position and brightness),
+ *  velocity (volume, determines size), and start time (in microseconds).
+ *  Note has a method that packs these values and five getter methods that
+ *  unpack them.
+ *
+ *  Bits of a packed note, from least significant:
+ *      0-6   pitch (0-127)
+ *      7-13  velocity (0-127)
+ *      14-17 channel (0-15)
+ *      18-24 program (0-127)
+ *      25-63 start time in microseconds (about 6 days)
+ *
  *  By Morgan Teman
  *
  **************************************************************************** */
 
-// Note data structure for ArrayList
-public class Note {
-    // instance variables
-    private static int program; // determines color, shape, quadrant
-    private static int channel; // determines percussion
-    private static int pitch; // determines position, brightness
-    private static int velocity; // determines size
-
-    public Note(int prog, int chan, int p, int vel) {
-        program = prog;
-        channel = chan;
-        pitch = p;
-        velocity = vel;
+// Note data structure for NoteTable
+public final class Note {
+    // bit positions
+    private static final int VELOCITY_SHIFT = 7;
+    private static final int CHANNEL_SHIFT = 14;
+    private static final int PROGRAM_SHIFT = 18;
+    private static final int START_SHIFT = 25;
+    // constants
+    public static final long MAX_START = (1L << (64 - START_SHIFT)) - 1; // max start time
+
+    // notes are packed longs, not objects
+    private Note() { }
+
+    /**
+     * Packs the values of a note into a long.
+     *
+     * @param prog  program number (0-127)
+     * @param chan  channel number (0-15)
+     * @param p     pitch (0-127)
+     * @param vel   velocity (0-127)
+     * @param start start time in microseconds (negative if unknown)
+     * @return packed note
+     */
+    public static long pack(int prog, int chan, int p, int vel, long start) {
+        long time = (start < 0) ? 0 : Math.min(start, MAX_START);
+        return (p & 0x7F)
+            | ((long) (vel & 0x7F) << VELOCITY_SHIFT)
+            | ((long) (chan & 0x0F) << CHANNEL_SHIFT)
+            | ((long) (prog & 0x7F) << PROGRAM_SHIFT)
+            | (time << START_SHIFT);
     }
 
-    public int getProg() {
-        return program;
+    public static int getProg(long note) {
+        return (int) (note >>> PROGRAM_SHIFT) & 0x7F;
     }
 
-    public int getChan() {
-        return channel;
+    public static int getChan(long note) {
+        return (int) (note >>> CHANNEL_SHIFT) & 0x0F;
     }
-    
-    public int getPitch() {
-        return pitch;
+
+    public static int getPitch(long note) {
+        return (int) note & 0x7F;
+    }
+
+    public static int getVel(long note) {
+        return (int) (note >>> VELOCITY_SHIFT) & 0x7F;
     }
 
-    public int getVel() {
-        return velocity;
+    public static long getStart(long note) {
+        return note >>> START_SHIFT;
     }
 
     public static void main(String[] args) {
-        
+        long note = pack(40, 9, 60, 100, 1234567);
+        System.out.println(getProg(note) + " " + getChan(note) + " " + getPitch(note)
+                           + " " + getVel(note) + " " + getStart(note));
     }
 }
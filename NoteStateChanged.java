@@ -0,0 +1,47 @@
+/* *****************************************************************************
+ *  Compilation:  javac NoteStateChanged.java
+ *
+ *  A NoteStateChanged is a JDK Flight Recorder event for each note started or
+ *  stopped in the NoteTable of playing notes, emitted on the thread that reads
+ *  MIDI messages. Notes restored from a keyframe while seeking are marked.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("eyetunes.NoteStateChanged")
+@Label("Note State Changed")
+@Description("A note started or stopped in the table of playing notes")
+@Category({"EyeTunes", "MIDI"})
+@StackTrace(false)
+public final class NoteStateChanged extends jdk.jfr.Event {
+    @Label("Note On")
+    @Description("True if the note started, false if it stopped")
+    boolean noteOn;
+
+    @Label("Channel")
+    int channel;
+
+    @Label("Pitch")
+    int pitch;
+
+    @Label("Velocity")
+    int velocity;
+
+    @Label("Program")
+    int program;
+
+    @Label("Playing")
+    @Description("Number of notes playing after the change")
+    int playing;
+
+    @Label("Seeking")
+    @Description("True if the change restores the notes at a seek, rather than playing")
+    boolean seeking;
+}
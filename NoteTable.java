@@ -0,0 +1,170 @@
+/* *****************************************************************************
+ *  Compilation:  javac NoteTable.java
+ *
+ *  A NoteTable keeps track of the currently playing notes, with one slot for
+ *  every channel (16) and pitch (128). NOTE_ON, NOTE_OFF, and NOTE_ON with
+ *  velocity 0 each update a single slot in constant time. The slots of the
+ *  playing notes are also kept in a dense array (removing a note moves the
+ *  last playing note into its place), so iterating over the playing notes
+ *  only visits playing notes. Notes are stored packed into longs (see Note),
+ *  and all arrays are allocated once, so no objects are created per note.
+ *
+ *  One thread (the MIDI transmitter thread) changes the NoteTable, while
+ *  another thread (the graphics thread) copies it with snapshot(). Changes
+ *  are guarded by a version number that is odd while a change is being made
+ *  (a sequence lock), so the writer never waits, and the reader copies again
+ *  if the NoteTable changed while it was copying.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import java.lang.invoke.VarHandle;
+
+public final class NoteTable {
+    // constants
+    public static final int CHANNELS = 16;
+    public static final int PITCHES = 128;
+    public static final int SLOTS = CHANNELS * PITCHES; // max number of playing notes
+
+    // instance variables, indexed by slot (channel * 128 + pitch)
+    private final long[] notes = new long[SLOTS];     // packed playing note
+    private final int[] positions = new int[SLOTS];   // position in active, -1 if not playing
+    // slots of playing notes, in positions 0 to size - 1
+    private final int[] active = new int[SLOTS];
+    private int size;
+
+    private volatile int version; // odd while a change is being made
+
+    // constructor
+    public NoteTable() {
+        for (int i = 0; i < SLOTS; i++) {
+            positions[i] = -1;
+        }
+    }
+
+    // start a change (writer only)
+    private void beginWrite() {
+        version = version + 1;
+        VarHandle.storeStoreFence();
+    }
+
+    // finish a change (writer only)
+    private void endWrite() {
+        version = version + 1;
+    }
+
+    /**
+     * Starts a note. A note that is already playing on the same channel and
+     * pitch is replaced. A velocity of 0 stops the note instead.
+     *
+     * @param program  current program number
+     * @param channel  channel number
+     * @param pitch    key code number
+     * @param velocity velocity
+     * @param start    start time in microseconds (negative if unknown)
+     */
+    public void noteOn(int program, int channel, int pitch, int velocity, long start) {
+        if (velocity == 0) {
+            noteOff(channel, pitch);
+            return;
+        }
+        int slot = channel * PITCHES + pitch;
+        beginWrite();
+        notes[slot] = Note.pack(program, channel, pitch, velocity, start);
+        if (positions[slot] < 0) {
+            positions[slot] = size;
+            active[size++] = slot;
+        }
+        endWrite();
+    }
+
+    /**
+     * Stops the note playing on a channel and pitch, if any.
+     *
+     * @param channel channel number
+     * @param pitch   key code number
+     */
+    public void noteOff(int channel, int pitch) {
+        int slot = channel * PITCHES + pitch;
+        int position = positions[slot];
+        if (position < 0) return;
+        beginWrite();
+        // move last playing note into the removed note's position
+        int last = active[--size];
+        active[position] = last;
+        positions[last] = position;
+        positions[slot] = -1;
+        endWrite();
+    }
+
+    // stop all notes
+    public void clear() {
+        beginWrite();
+        for (int i = 0; i < size; i++) {
+            positions[active[i]] = -1;
+        }
+        size = 0;
+        endWrite();
+    }
+
+    /**
+     * Replaces the playing notes with the given packed notes (as copied by
+     * snapshot()), in the same order, so that a NoteTable can continue from a
+     * copy of another.
+     *
+     * @param src   packed playing notes
+     * @param count number of playing notes
+     */
+    public void restore(long[] src, int count) {
+        beginWrite();
+        for (int i = 0; i < size; i++) {
+            positions[active[i]] = -1;
+        }
+        size = 0;
+        for (int i = 0; i < count; i++) {
+            long note = src[i];
+            int slot = Note.getChan(note) * PITCHES + Note.getPitch(note);
+            notes[slot] = note;
+            if (positions[slot] < 0) {
+                positions[slot] = size;
+                active[size++] = slot;
+            }
+        }
+        endWrite();
+    }
+
+    // get number of playing notes
+    public int size() {
+        return size;
+    }
+
+    // get version number, which changes whenever the NoteTable changes
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Copies the packed playing notes into the given array, which must have
+     * room for SLOTS notes. Can be called while another thread changes the
+     * NoteTable; the copy is always of a complete state.
+     *
+     * @param dst packed playing notes
+     * @return number of playing notes copied
+     */
+    public int snapshot(long[] dst) {
+        while (true) {
+            int before = version;
+            if ((before & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            int n = size;
+            for (int i = 0; i < n; i++) {
+                dst[i] = notes[active[i]];
+            }
+            VarHandle.loadLoadFence();
+            if (version == before) return n;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/* *****************************************************************************
+ *  Compilation:  javac NoteTimeline.java
+ *
+ *  A NoteTimeline holds every note of a MIDI Sequence, from its NOTE_ON to its
+ *  NOTE_OFF, so that the notes playing at any tick can be found without
+ *  playing the Sequence. It is built in one pass over an EventList, following
+ *  the same rules as a NoteTable: a NOTE_ON with velocity 0 is a NOTE_OFF, a
+ *  NOTE_ON on a channel and pitch that is already playing ends the playing
+ *  note, and the program of a note is the last PROGRAM_CHANGE of its channel.
+ *  Notes still playing at the end of the Sequence end just after its last
+ *  tick, so they are playing at every tick up to the end.
+ *
+ *  Notes are stored by column, sorted by start tick (notes starting at the same
+ *  tick are in the order of their NOTE_ONs): one int array each for the start
+ *  tick, end tick, channel, program, pitch, and velocity. A note is playing
+ *  at tick t if start <= t < end. To find these notes without visiting every
+ *  note that started before t, a segment tree holds the latest end tick of
+ *  every range of notes, so ranges whose notes have all ended are skipped.
+ *  Both queries take logarithmic time (plus the number of notes found):
+ *      activeAt(t, dst)       notes playing at tick t
+ *      firstStartingAt(t)     first note starting at or after tick t, so the
+ *                             notes starting in [t0, t1) are the notes from
+ *                             firstStartingAt(t0) to firstStartingAt(t1) - 1
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import java.util.Arrays;
+
+public final class NoteTimeline {
+    // instance variables, indexed by note number (in order of start tick)
+    private final int[] starts;     // start tick
+    private final int[] ends;       // end tick
+    private final int[] channels;   // channel number
+    private final int[] programs;   // program number
+    private final int[] pitches;    // key code number
+    private final int[] velocities; // velocity
+    private final int size;         // number of notes
+    private final long tickLength;  // length of the Sequence in ticks
+
+    // segment tree of latest end ticks: leaves at leaves + note, node i covers 2i and 2i + 1
+    private final int leaves;
+    private final int[] latestEnds;
+
+    // constructor
+    public NoteTimeline(Sequence sequence) {
+        this(new EventList(sequence));
+    }
+
+    // constructor, from the messages of a Sequence
+    public NoteTimeline(EventList list) {
+        tickLength = list.getTickLength();
+        if (tickLength >= Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Sequence is too long: " + tickLength + " ticks");
+
+        // at most one note per NOTE_ON
+        int capacity = 0;
+        for (int i = 0; i < list.size(); i++) {
+            int event = list.getEvent(i);
+            if ((MidiEventRing.getStatus(event) & 0xF0) == ShortMessage.NOTE_ON) capacity++;
+        }
+        starts = new int[capacity];
+        ends = new int[capacity];
+        channels = new int[capacity];
+        programs = new int[capacity];
+        pitches = new int[capacity];
+        velocities = new int[capacity];
+
+        // note playing on each channel and pitch, -1 if none
+        int[] playing = new int[NoteTable.SLOTS];
+        Arrays.fill(playing, -1);
+        int[] current = new int[NoteTable.CHANNELS]; // current program of each channel
+        int n = 0;
+        for (int i = 0; i < list.size(); i++) {
+            int event = list.getEvent(i);
+            int tick = (int) list.getTick(i);
+            int status = MidiEventRing.getStatus(event);
+            int command = status & 0xF0;
+            int channel = status & 0x0F;
+            int data1 = MidiEventRing.getData1(event);
+            int data2 = MidiEventRing.getData2(event);
+            if (command == ShortMessage.PROGRAM_CHANGE) {
+                current[channel] = data1;
+                continue;
+            }
+            boolean noteOn = (command == ShortMessage.NOTE_ON && data2 > 0);
+            if (!noteOn && command != ShortMessage.NOTE_ON && command != ShortMessage.NOTE_OFF) continue;
+
+            // end the note playing on this channel and pitch
+            int slot = channel * NoteTable.PITCHES + data1;
+            if (playing[slot] >= 0) ends[playing[slot]] = tick;
+            playing[slot] = -1;
+            if (!noteOn) continue;
+
+            starts[n] = tick;
+            channels[n] = channel;
+            programs[n] = current[channel];
+            pitches[n] = data1;
+            velocities[n] = data2;
+            playing[slot] = n++;
+        }
+        // notes playing at the end of the Sequence
+        for (int slot = 0; slot < NoteTable.SLOTS; slot++) {
+            if (playing[slot] >= 0) ends[playing[slot]] = (int) tickLength + 1;
+        }
+        size = n;
+
+        // build segment tree over latest end ticks
+        int leafCount = 1;
+        while (leafCount < size) leafCount *= 2;
+        leaves = leafCount;
+        latestEnds = new int[2 * leaves];
+        Arrays.fill(latestEnds, Integer.MIN_VALUE);
+        System.arraycopy(ends, 0, latestEnds, leaves, size);
+        for (int i = leaves - 1; i > 0; i--) {
+            latestEnds[i] = Math.max(latestEnds[2 * i], latestEnds[2 * i + 1]);
+        }
+    }
+
+    // getters
+    // get number of notes
+    public int size() {
+        return size;
+    }
+
+    // get length of the Sequence in ticks
+    public long getTickLength() {
+        return tickLength;
+    }
+
+    public int getStart(int note) {
+        return starts[note];
+    }
+
+    public int getEnd(int note) {
+        return ends[note];
+    }
+
+    public int getChannel(int note) {
+        return channels[note];
+    }
+
+    public int getProgram(int note) {
+        return programs[note];
+    }
+
+    public int getPitch(int note) {
+        return pitches[note];
+    }
+
+    public int getVelocity(int note) {
+        return velocities[note];
+    }
+
+    /**
+     * Returns the most notes playing at once, at any tick. Sweeps the start
+     * ticks (already sorted) and the sorted end ticks together; a note ending
+     * at a tick is no longer playing when another starts at that tick.
+     *
+     * @return peak number of notes playing
+     */
+    public int getPeakPolyphony() {
+        int[] sortedEnds = Arrays.copyOf(ends, size);
+        Arrays.sort(sortedEnds);
+        int peak = 0;
+        int ended = 0;
+        for (int i = 0; i < size; i++) {
+            while (ended < size && sortedEnds[ended] <= starts[i]) ended++;
+            peak = Math.max(peak, i + 1 - ended);
+        }
+        return peak;
+    }
+
+    /**
+     * Returns the first note that starts at or after the given tick, or size()
+     * if there is none.
+     *
+     * @param tick tick of the Sequence
+     * @return note number
+     */
+    public int firstStartingAt(long tick) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (starts[mid] < tick) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Copies the numbers of the notes playing at the given tick into dst, in
+     * order of start tick. At most one note plays on each channel and pitch,
+     * so dst needs room for at most NoteTable.SLOTS notes.
+     *
+     * @param tick tick of the Sequence
+     * @param dst  note numbers
+     * @return number of notes playing
+     */
+    public int activeAt(long tick, int[] dst) {
+        // notes that started at or before tick
+        int started = firstStartingAt(tick + 1);
+        return collect(1, 0, leaves, started, tick, dst, 0);
+    }
+
+    // add notes from lo to hi - 1 (node's range) that started before started and end after tick
+    private int collect(int node, int lo, int hi, int started, long tick, int[] dst, int count) {
+        if (lo >= started || latestEnds[node] <= tick) return count;
+        if (hi - lo == 1) {
+            dst[count++] = lo;
+            return count;
+        }
+        int mid = (lo + hi) >>> 1;
+        count = collect(2 * node, lo, mid, started, tick, dst, count);
+        return collect(2 * node + 1, mid, hi, started, tick, dst, count);
+    }
+}
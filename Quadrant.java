@@ -0,0 +1,69 @@
+/* *****************************************************************************
+ *  Compilation:  javac Quadrant.java
+ *
+ *  The Quadrant enum lists the regions of the canvas that a program can be
+ *  mapped to in the programvisuals table. Each region is stored as a width,
+ *  height, and offset in pixels of the 1360:765 buffered canvas (the 40 and
+ *  22.5 pixel borders are included in the offsets). Since a note's position
+ *  depends only on its pitch and its quadrant, the x- and y-coordinates of
+ *  all 128 pitches are calculated once for each quadrant. Quadrant N (and any
+ *  unknown quadrant text) scales pitch across the entire canvas.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+public enum Quadrant {
+    A(160.0,   40.0, 120.0, 622.5),
+    B(160.0,   40.0, 120.0, 502.5),
+    C(320.0,   40.0, 240.0, 262.5),
+    D(320.0,   40.0, 240.0,  22.5),
+    E(160.0,  200.0, 240.0, 502.5),
+    F(440.0,  360.0, 480.0, 262.5),
+    G(960.0,  360.0, 240.0,  22.5),
+    H(240.0,  840.0, 480.0, 262.5),
+    I(240.0, 1080.0, 240.0, 382.5),
+    J(120.0, 1080.0, 240.0, 262.5),
+    K(120.0, 1200.0, 240.0, 262.5),
+    N(1360.0,   0.0, 765.0,   0.0);
+
+    // constants
+    private static final double WIDTH = 1360.0; // buffered canvas width
+    private static final double HEIGHT = 765.0; // buffered canvas height
+    private static final double MAXNUM = 128.0; // max number of 127 pitches
+
+    // x- and y-coordinates of every pitch in this quadrant
+    private final double[] xs = new double[128];
+    private final double[] ys = new double[128];
+
+    Quadrant(double width, double xOffset, double height, double yOffset) {
+        for (int pitch = 0; pitch < 128; pitch++) {
+            xs[pitch] = (width / WIDTH) * (pitch / MAXNUM) + xOffset / WIDTH;
+            ys[pitch] = (height / HEIGHT) * (pitch / MAXNUM) + yOffset / HEIGHT;
+        }
+    }
+
+    // get x-coordinate of a pitch in this quadrant
+    public double getX(int pitch) {
+        return xs[pitch];
+    }
+
+    // get y-coordinate of a pitch in this quadrant
+    public double getY(int pitch) {
+        return ys[pitch];
+    }
+
+    /**
+     * Returns the Quadrant stored in the database as the given text. If the
+     * text does not name a quadrant, returns N (entire canvas).
+     *
+     * @param text quadrant text from programvisuals
+     * @return matching Quadrant
+     */
+    public static Quadrant fromText(String text) {
+        for (Quadrant quadrant : values()) {
+            if (quadrant.name().equals(text)) return quadrant;
+        }
+        return N;
+    }
+}
@@ -0,0 +1,61 @@
+/* *****************************************************************************
+ *  Compilation:  javac Renderer.java
+ *
+ *  The Renderer interface is the drawing surface that the Shape subclasses and
+ *  CombineClasses draw frames on. Coordinates are those of StdDraw's default
+ *  scale: (0, 0) is the bottom left and (1, 1) the top right of the canvas.
+ *  A frame starts with clear(), which paints the background, and ends with
+ *  show(), which displays it; shapes drawn between them only become visible
+ *  once show() is called, so implementations may batch them. A renderer whose
+ *  canvas keeps the last frame shown (keepsFrame()) can also start a frame by
+ *  clearing only a region of the canvas, so only that region is drawn again;
+ *  show() still displays the whole canvas. StdDrawRenderer draws with StdDraw,
+ *  as EyeTunes always has, and Java2DRenderer draws directly with Java2D into
+ *  a page flipped window or an offscreen image. Keys typed in the window are
+ *  read as with StdDraw's nextKeyTyped().
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import java.awt.Color;
+
+public interface Renderer {
+    // get canvas size in pixels
+    public int getWidth();
+    public int getHeight();
+
+    // start a frame by painting the whole canvas in the given color
+    public void clear(Color color);
+
+    // check if the canvas keeps the last frame shown, so the next frame can only
+    // change a region of it
+    public default boolean keepsFrame() {
+        return false;
+    }
+
+    // start a frame that only changes the region from (x0, y0) to (x1, y1), on pixel
+    // boundaries, by painting the region in the given color (the whole canvas unless
+    // keepsFrame())
+    public default void clear(Color color, double x0, double y0, double x1, double y1) {
+        clear(color);
+    }
+
+    // set color of the following shapes
+    public void setPenColor(Color color);
+
+    // draw shapes, uses first n coordinates of xs and ys
+    public void filledPolygon(double[] xs, double[] ys, int n);
+    public void filledCircle(double x, double y, double radius);
+    public void line(double x0, double y0, double x1, double y1);
+
+    // finish the frame and display it
+    public void show();
+
+    // keys typed in the window, in the order typed (never any without a window)
+    public boolean hasNextKeyTyped();
+    public char nextKeyTyped();
+
+    // release the window or image
+    public void close();
+}
@@ -22,13 +22,19 @@ public class Sawtooth implements Shape {
     private double y; // y coord
     private double quartLen; // quarter of the length
     // constants
-    private final double FACTOR = Math.sqrt(3) / 2;
+    private static final double FACTOR = Math.sqrt(3) / 2;
+    // unit sawtooth (quarter length 1), four triangles from left to right
+    private static final double[] UNIT_X = {-2, -1.5, -1, -1, -0.5, 0,
+        0, 0.5, 1, 1, 1.5, 2};
+    private static final double[] UNIT_Y = {0, FACTOR, 0, 0, FACTOR, 0,
+        0, FACTOR, 0, 0, FACTOR, 0};
+    // scratch coordinates for drawing, one pair for each thread
+    private static final ThreadLocal<double[][]> SCRATCH =
+        ThreadLocal.withInitial(() -> new double[2][UNIT_X.length]);
 
     // constructor
     public Sawtooth(double x, double y, double radius) {
-        this.x = x;
-        this.y = y;
-        this.quartLen = radius / 4;
+        reset(x, y, radius);
     }
 
     // getters
@@ -65,21 +71,32 @@ public class Sawtooth implements Shape {
         // (x + 2 * quartLen, y)
     // get array of x-coordinates to draw
     public double[] getXCoords() {
-        double[] coords = {x - 2 * quartLen, x - ((3.0) / 2) * quartLen, 
-            x - quartLen, x - quartLen, x - ((1.0) / 2) * quartLen, x, 
-            x, x + ((1.0) / 2) * quartLen, x + quartLen, x + quartLen, 
-            x + ((3.0) / 2) * quartLen, x + 2 * quartLen};
+        double[] coords = new double[UNIT_X.length];
+        getCoords(coords, new double[UNIT_Y.length]);
         return coords;
     }
 
     // get array of y-coordinates to draw
     public double[] getYCoords() {
-        double[] coords = {y, y + FACTOR * quartLen, y, y, 
-            y + FACTOR * quartLen, y, y, y + FACTOR * quartLen, 
-            y, y, y + FACTOR * quartLen, y};
+        double[] coords = new double[UNIT_Y.length];
+        getCoords(new double[UNIT_X.length], coords);
         return coords;
     }
 
+    // get number of coordinates to draw
+    public int getNumCoords() {
+        return UNIT_X.length;
+    }
+
+    // copy coordinates to draw, scaled from unit sawtooth
+    public int getCoords(double[] xs, double[] ys) {
+        for (int i = 0; i < UNIT_X.length; i++) {
+            xs[i] = x + quartLen * UNIT_X[i];
+            ys[i] = y + quartLen * UNIT_Y[i];
+        }
+        return UNIT_X.length;
+    }
+
     // setters
     // set x coordinate - center
     public void setX(double newX) {
@@ -96,10 +113,17 @@ public class Sawtooth implements Shape {
         quartLen = newLen / 4;
     }
 
-    // draw the shape
-    public void draw() {
-        double[] xs = getXCoords();
-        double[] ys = getYCoords();
-        StdDraw.filledPolygon(xs, ys);
+    // set center and quarter length, as in the constructor
+    public void reset(double newX, double newY, double radius) {
+        this.x = newX;
+        this.y = newY;
+        this.quartLen = radius / 4;
+    }
+
+    // draw the shape with the renderer
+    public void draw(Renderer renderer) {
+        double[][] scratch = SCRATCH.get();
+        int n = getCoords(scratch[0], scratch[1]);
+        renderer.filledPolygon(scratch[0], scratch[1], n);
     }
 }
\ No newline at end of file
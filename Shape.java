@@ -5,7 +5,11 @@
  *  The Shape Abstract Data Type defines the main coordinates and dimensions of
  *  the individual visuals. Subclasses inherit getter methods that provide the
  *  central coordinate and the length, setter methods that can change these
- *  values, and the draw method, which draws the polygon from its coordinates.
+ *  values, and the draw method, which draws the polygon from its coordinates
+ *  with a Renderer. Each subclass calculates the outline of a unit-sized
+ *  shape once, and only scales and translates it into caller-supplied arrays
+ *  (getCoords) or into scratch arrays of the drawing thread (draw), so drawing
+ *  creates no arrays.
  * 
  *  By Morgan Teman
  *
@@ -19,11 +23,18 @@ public interface Shape {
     public double[] getXCoords();
     public double[] getYCoords();
 
+    // get number of coordinates to draw
+    public int getNumCoords();
+    // copy coordinates to draw into xs and ys, return number of coordinates
+    public int getCoords(double[] xs, double[] ys);
+
     // set coordinates
     public void setX(double newX);
     public void setY(double newY);
     public void setLen(double newLen);
+    // set center and size, as in the constructor
+    public void reset(double newX, double newY, double radius);
 
-    // draw the shape
-    public void draw();
+    // draw the shape with the renderer
+    public void draw(Renderer renderer);
 }
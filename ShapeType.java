@@ -0,0 +1,141 @@
+/* *****************************************************************************
+ *  Compilation:  javac ShapeType.java
+ *
+ *  The ShapeType enum lists the Shape subclasses that a program can be mapped
+ *  to in the programvisuals table. Each constant stores the text used for it
+ *  in the database, so the text only has to be compared once when the mappings
+ *  are loaded, and creates its corresponding Shape object from a central
+ *  coordinate and a length. To draw a frame without creating objects, draw()
+ *  reuses one Shape object of each type for each drawing thread, moved and
+ *  resized with reset(), which bounds() also uses to measure the rectangle a
+ *  shape covers.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+public enum ShapeType {
+    SQUARE("square"),
+    HORIZONTAL_RECTANGLE("horizontal rectangle"),
+    RIGHT_DIAGONAL_RECTANGLE("right diagonal rectangle"),
+    LEFT_DIAGONAL_RECTANGLE("left diagonal rectangle"),
+    CIRCLE("circle"),
+    SQUIGGLE("squiggle"),
+    SAWTOOTH("sawtooth");
+
+    // reusable Shape objects for drawing, indexed by ordinal, one set for each thread
+    private static final ThreadLocal<Shape[]> REUSABLE =
+        ThreadLocal.withInitial(() -> new Shape[values().length]);
+    // scratch coordinates for bounds(), one pair for each thread (grown as needed)
+    private static final ThreadLocal<double[][]> SCRATCH =
+        ThreadLocal.withInitial(() -> new double[2][64]);
+
+    // shape text as stored in programvisuals
+    private final String text;
+
+    ShapeType(String text) {
+        this.text = text;
+    }
+
+    // get shape text as stored in programvisuals
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Returns the ShapeType stored in the database as the given text, or null
+     * if the text does not name a shape (nothing is drawn for these notes).
+     *
+     * @param text shape text from programvisuals
+     * @return matching ShapeType, or null
+     */
+    public static ShapeType fromText(String text) {
+        for (ShapeType type : values()) {
+            if (type.text.equals(text)) return type;
+        }
+        return null;
+    }
+
+    /**
+     * Creates the Shape subclass object for this type.
+     *
+     * @param x      x-coordinate of the center
+     * @param y      y-coordinate of the center
+     * @param length size of the shape, calculated from velocity
+     * @return new Shape object
+     */
+    public Shape create(double x, double y, double length) {
+        switch (this) {
+            case SQUARE:                   return new Square(x, y, length);
+            case HORIZONTAL_RECTANGLE:     return new HorizontalRectangle(x, y, length);
+            case RIGHT_DIAGONAL_RECTANGLE: return new RightDiagonalRectangle(x, y, length);
+            case LEFT_DIAGONAL_RECTANGLE:  return new LeftDiagonalRectangle(x, y, length);
+            case CIRCLE:                   return new Circle(x, y, length);
+            case SQUIGGLE:                 return new Squiggle(x, y, length);
+            case SAWTOOTH:                 return new Sawtooth(x, y, length);
+            default: throw new IllegalStateException("Unknown shape: " + this);
+        }
+    }
+
+    /**
+     * Draws a shape of this type without creating a new Shape object (after
+     * the first one of this type on this thread).
+     *
+     * @param renderer renderer to draw with
+     * @param x        x-coordinate of the center
+     * @param y        y-coordinate of the center
+     * @param length   size of the shape, calculated from velocity
+     */
+    public void draw(Renderer renderer, double x, double y, double length) {
+        reusable(x, y, length).draw(renderer);
+    }
+
+    /**
+     * Copies the bounding box of a shape of this type (as drawn, not counting
+     * the width of lines) into box, as x0, y0, x1, y1.
+     *
+     * @param x      x-coordinate of the center
+     * @param y      y-coordinate of the center
+     * @param length size of the shape, calculated from velocity
+     * @param box    array of at least 4 elements
+     */
+    public void bounds(double x, double y, double length, double[] box) {
+        // a circle's coordinates are just its center
+        if (this == CIRCLE) {
+            box[0] = x - length / 2;
+            box[1] = y - length / 2;
+            box[2] = x + length / 2;
+            box[3] = y + length / 2;
+            return;
+        }
+        Shape shape = reusable(x, y, length);
+        double[][] scratch = SCRATCH.get();
+        if (scratch[0].length < shape.getNumCoords()) {
+            scratch[0] = new double[shape.getNumCoords()];
+            scratch[1] = new double[shape.getNumCoords()];
+        }
+        int n = shape.getCoords(scratch[0], scratch[1]);
+        box[0] = box[1] = Double.POSITIVE_INFINITY;
+        box[2] = box[3] = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            box[0] = Math.min(box[0], scratch[0][i]);
+            box[1] = Math.min(box[1], scratch[1][i]);
+            box[2] = Math.max(box[2], scratch[0][i]);
+            box[3] = Math.max(box[3], scratch[1][i]);
+        }
+    }
+
+    // reusable Shape object of this type for this thread, moved and resized
+    private Shape reusable(double x, double y, double length) {
+        Shape[] reusable = REUSABLE.get();
+        Shape shape = reusable[ordinal()];
+        if (shape == null) {
+            shape = create(x, y, length);
+            reusable[ordinal()] = shape;
+        }
+        else {
+            shape.reset(x, y, length);
+        }
+        return shape;
+    }
+}
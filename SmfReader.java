@@ -0,0 +1,321 @@
+/* *****************************************************************************
+ *  Compilation:  javac SmfReader.java
+ *
+ *  An SmfReader reads a Standard MIDI File (.mid) straight into an EventList
+ *  and a TempoMap, without creating a Sequence, a MidiEvent, or a MidiMessage
+ *  for every event. The file is memory-mapped, and every track (MTrk chunk)
+ *  is decoded on its own thread of the common ForkJoinPool: delta times and
+ *  lengths (variable-length quantities) and running status are decoded from
+ *  the mapped bytes into primitive arrays. The decoded tracks are then merged
+ *  by tick with a heap of one cursor per track (a k-way merge), so messages at
+ *  the same tick stay in the order of their tracks, exactly as in an EventList
+ *  of the Sequence that MidiSystem would read from the same file.
+ *
+ *  Channel messages are kept, set tempo MetaMessages go to the TempoMap, and
+ *  all other MetaMessages and system exclusive messages are skipped. As in
+ *  MidiSystem's reader, running status continues across MetaMessages and
+ *  system exclusive messages, and the length of the Sequence is the tick of
+ *  the last event of its longest track.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.Sequence;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+public final class SmfReader {
+    // constants
+    private static final int MTHD = 0x4D546864; // "MThd"
+    private static final int MTRK = 0x4D54726B; // "MTrk"
+    private static final int META = 0xFF;       // MetaMessage status byte
+    private static final int SYSEX = 0xF0;      // system exclusive status byte
+    private static final int SYSEX_CONTINUED = 0xF7; // continued system exclusive status byte
+    private static final int END_OF_TRACK = 0x2F; // MetaMessage end of track event
+
+    // instance variables
+    private final float divisionType; // Sequence.PPQ or SMPTE frames per second
+    private final int resolution;     // ticks per quarter note (PPQ), or per SMPTE frame
+    private final int trackCount;     // number of tracks
+    private final EventList events;   // channel messages of all tracks, in tick order
+    private final TempoMap tempoMap;  // tempo changes of all tracks
+
+    // messages of one decoded track
+    private static final class TrackEvents {
+        int[] events;   // packed messages (see MidiEventRing)
+        long[] ticks;   // tick of each message
+        int count;      // number of messages
+        long[] tempos = new long[4]; // tempo changes, tick << 24 | tempo
+        int tempoCount; // number of tempo changes
+        long lastTick;  // tick of the last event
+
+        TrackEvents(int capacity) {
+            events = new int[capacity];
+            ticks = new long[capacity];
+        }
+
+        void add(int event, long tick) {
+            if (count == events.length) {
+                events = Arrays.copyOf(events, 2 * count);
+                ticks = Arrays.copyOf(ticks, 2 * count);
+            }
+            events[count] = event;
+            ticks[count++] = tick;
+        }
+
+        void addTempo(long tick, int tempo) {
+            if (tempoCount == tempos.length) tempos = Arrays.copyOf(tempos, 2 * tempoCount);
+            tempos[tempoCount++] = (tick << 24) | tempo;
+        }
+    }
+
+    /**
+     * Reads a Standard MIDI File.
+     *
+     * @param filename the name of the MIDI file
+     * @throws IOException if reading from the file failed
+     * @throws InvalidMidiDataException if the file is not a valid MIDI file
+     */
+    public SmfReader(String filename) throws IOException, InvalidMidiDataException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("File is too large: " + filename);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        // header chunk: format, number of tracks, division
+        if (buffer.limit() < 14 || buffer.getInt(0) != MTHD)
+            throw new InvalidMidiDataException("Not a Standard MIDI File: " + filename);
+        int headerLength = buffer.getInt(4);
+        int division = buffer.getShort(12) & 0xFFFF;
+        if ((division & 0x8000) != 0) {
+            // SMPTE: negative frames per second in the high byte, ticks per frame in the low byte
+            int frames = -(byte) (division >>> 8);
+            divisionType = (frames == 29) ? Sequence.SMPTE_30DROP : frames;
+            resolution = division & 0xFF;
+        }
+        else {
+            divisionType = Sequence.PPQ;
+            resolution = division;
+        }
+
+        // find track chunks (other chunks are skipped)
+        List<int[]> chunks = new ArrayList<int[]>();
+        long position = 8L + headerLength;
+        while (position + 8 <= buffer.limit()) {
+            int type = buffer.getInt((int) position);
+            long length = buffer.getInt((int) position + 4) & 0xFFFFFFFFL;
+            long start = position + 8;
+            long end = Math.min(start + length, buffer.limit());
+            if (type == MTRK) chunks.add(new int[] { (int) start, (int) end });
+            position = start + length;
+        }
+        trackCount = chunks.size();
+
+        // decode every track on its own thread
+        List<Callable<TrackEvents>> tasks = new ArrayList<Callable<TrackEvents>>();
+        for (int[] chunk : chunks) {
+            tasks.add(() -> decode(buffer, chunk[0], chunk[1]));
+        }
+        TrackEvents[] tracks = new TrackEvents[trackCount];
+        try {
+            List<Future<TrackEvents>> results = ForkJoinPool.commonPool().invokeAll(tasks);
+            for (int t = 0; t < trackCount; t++) {
+                tracks[t] = results.get(t).get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Reading was interrupted: " + filename);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof InvalidMidiDataException) throw (InvalidMidiDataException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+
+        // tempo changes, track by track
+        int tempoCount = 0;
+        for (TrackEvents track : tracks) tempoCount += track.tempoCount;
+        long[] tempos = new long[tempoCount];
+        tempoCount = 0;
+        for (TrackEvents track : tracks) {
+            System.arraycopy(track.tempos, 0, tempos, tempoCount, track.tempoCount);
+            tempoCount += track.tempoCount;
+        }
+        tempoMap = new TempoMap(divisionType, resolution, tempos, tempoCount);
+        events = merge(tracks);
+    }
+
+    // decode the events of the track chunk from start to end - 1
+    private static TrackEvents decode(ByteBuffer buffer, int start, int end)
+        throws InvalidMidiDataException {
+        // about one channel message for every 3 to 4 bytes
+        TrackEvents track = new TrackEvents(Math.max(16, (end - start) / 3));
+        int pos = start;
+        long tick = 0;
+        int runningStatus = 0;
+        while (pos < end) {
+            // delta time
+            long delta = 0;
+            int b;
+            do {
+                if (pos >= end) throw new InvalidMidiDataException("Unexpected end of track");
+                b = buffer.get(pos++) & 0xFF;
+                delta = (delta << 7) | (b & 0x7F);
+            } while ((b & 0x80) != 0);
+            tick += delta;
+            track.lastTick = tick;
+
+            if (pos >= end) throw new InvalidMidiDataException("Unexpected end of track");
+            int status = buffer.get(pos) & 0xFF;
+            if (status < 0x80) {
+                // running status: this byte is the first data byte
+                if (runningStatus == 0)
+                    throw new InvalidMidiDataException("Data byte without status at tick " + tick);
+                status = runningStatus;
+            }
+            else {
+                pos++;
+            }
+
+            if (status < SYSEX) {
+                // channel message, PROGRAM_CHANGE and CHANNEL_PRESSURE have one data byte
+                runningStatus = status;
+                int command = status & 0xF0;
+                int length = (command == 0xC0 || command == 0xD0) ? 1 : 2;
+                if (pos + length > end) throw new InvalidMidiDataException("Unexpected end of track");
+                int data1 = buffer.get(pos) & 0xFF;
+                int data2 = (length == 2) ? buffer.get(pos + 1) & 0xFF : 0;
+                pos += length;
+                track.add(MidiEventRing.pack(status, data1, data2), tick);
+            }
+            else if (status == META) {
+                if (pos >= end) throw new InvalidMidiDataException("Unexpected end of track");
+                int type = buffer.get(pos++) & 0xFF;
+                long length = 0;
+                do {
+                    if (pos >= end) throw new InvalidMidiDataException("Unexpected end of track");
+                    b = buffer.get(pos++) & 0xFF;
+                    length = (length << 7) | (b & 0x7F);
+                } while ((b & 0x80) != 0);
+                if (pos + length > end) throw new InvalidMidiDataException("Unexpected end of track");
+                if (type == TempoMap.SET_TEMPO && length >= 3) {
+                    int tempo = ((buffer.get(pos) & 0xFF) << 16) | ((buffer.get(pos + 1) & 0xFF) << 8)
+                        | (buffer.get(pos + 2) & 0xFF);
+                    track.addTempo(tick, tempo);
+                }
+                pos += (int) length;
+                if (type == END_OF_TRACK) break;
+            }
+            else if (status == SYSEX || status == SYSEX_CONTINUED) {
+                long length = 0;
+                do {
+                    if (pos >= end) throw new InvalidMidiDataException("Unexpected end of track");
+                    b = buffer.get(pos++) & 0xFF;
+                    length = (length << 7) | (b & 0x7F);
+                } while ((b & 0x80) != 0);
+                if (pos + length > end) throw new InvalidMidiDataException("Unexpected end of track");
+                pos += (int) length;
+            }
+            else {
+                throw new InvalidMidiDataException("Invalid status byte " + status + " at tick " + tick);
+            }
+        }
+        return track;
+    }
+
+    // merge the messages of all tracks by tick (ties in track order) with a heap of tracks
+    private static EventList merge(TrackEvents[] tracks) {
+        int total = 0;
+        long tickLength = 0;
+        for (TrackEvents track : tracks) {
+            total += track.count;
+            tickLength = Math.max(tickLength, track.lastTick);
+        }
+        int[] events = new int[total];
+        long[] ticks = new long[total];
+
+        // heap of tracks that have messages left, ordered by tick of next message, then track
+        int[] heap = new int[tracks.length];
+        int[] next = new int[tracks.length]; // next message of each track
+        int size = 0;
+        for (int t = 0; t < tracks.length; t++) {
+            if (tracks[t].count > 0) heap[size++] = t;
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) sink(heap, size, i, tracks, next);
+
+        for (int n = 0; n < total; n++) {
+            TrackEvents track = tracks[heap[0]];
+            int i = next[heap[0]]++;
+            events[n] = track.events[i];
+            ticks[n] = track.ticks[i];
+            if (next[heap[0]] == track.count) heap[0] = heap[--size];
+            sink(heap, size, 0, tracks, next);
+        }
+        return new EventList(events, ticks, tickLength);
+    }
+
+    // compare next messages of tracks a and b: by tick, then by track
+    private static boolean before(int a, int b, TrackEvents[] tracks, int[] next) {
+        long tickA = tracks[a].ticks[next[a]];
+        long tickB = tracks[b].ticks[next[b]];
+        return tickA < tickB || (tickA == tickB && a < b);
+    }
+
+    // restore heap order below position i
+    private static void sink(int[] heap, int size, int i, TrackEvents[] tracks, int[] next) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && before(heap[left], heap[smallest], tracks, next)) smallest = left;
+            if (right < size && before(heap[right], heap[smallest], tracks, next)) smallest = right;
+            if (smallest == i) return;
+            int swap = heap[i];
+            heap[i] = heap[smallest];
+            heap[smallest] = swap;
+            i = smallest;
+        }
+    }
+
+    // getters
+    // get channel messages of all tracks, in tick order
+    public EventList getEvents() {
+        return events;
+    }
+
+    // get tempo changes of all tracks
+    public TempoMap getTempoMap() {
+        return tempoMap;
+    }
+
+    // get number of tracks
+    public int getTrackCount() {
+        return trackCount;
+    }
+
+    // get timing division type (Sequence.PPQ or SMPTE frames per second)
+    public float getDivisionType() {
+        return divisionType;
+    }
+
+    // get ticks per quarter note (PPQ), or per SMPTE frame
+    public int getResolution() {
+        return resolution;
+    }
+}
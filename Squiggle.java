@@ -8,7 +8,11 @@
  *  draws the squiggle from its coordinates. It also defines methods that 
  *  calculate the coordinates of the points along the curves to be called 
  *  in the draw method. Its instance variables are the central x- and y-
- *  coordinate and the full length of all of the curves side by side.
+ *  coordinate and the full length of all of the curves side by side. The
+ *  offsets of the points along the length are calculated once; since the
+ *  phase of the curve grows by the same step from point to point, the curve
+ *  is followed by rotating one (sin, cos) pair instead of calling Math.sin
+ *  for every point.
  * 
  *  By Morgan Teman
  *
@@ -19,12 +23,23 @@ public class Squiggle implements Shape {
     private double x; // x coord
     private double y; // y coord
     private double len; // length of full curve
+    // constants
+    private static final int POINTS = 51; // number of points along the curve
+    private static final double AMPLITUDE = 1.0 / 25.0; // height of the curve
+    // offsets of the points, as fractions of the length (1 down to -1)
+    private static final double[] UNIT_X = new double[POINTS];
+    static {
+        for (int i = 0; i < POINTS; i++) {
+            UNIT_X[i] = (25.0 - i) / 25.0;
+        }
+    }
+    // scratch coordinates for drawing, one pair for each thread
+    private static final ThreadLocal<double[][]> SCRATCH =
+        ThreadLocal.withInitial(() -> new double[2][POINTS]);
 
     // constructor
     public Squiggle(double x, double y, double radius) {
-        this.x = x;
-        this.y = y;
-        this.len = radius;
+        reset(x, y, radius);
     }
 
     // getters
@@ -43,25 +58,45 @@ public class Squiggle implements Shape {
         return len;
     }
 
-    // get array of x-coordinates to draw (just center)
+    // get array of x-coordinates to draw
     public double[] getXCoords() {
-        double[] coords = new double[51];
-        for (int i = 0; i < 51; i++) {
-            coords[i] = x - ((25.0 - i) / 25.0) * len;
-        }
+        double[] coords = new double[POINTS];
+        getCoords(coords, new double[POINTS]);
         return coords;
     }
 
-    // get array of y-coordinates to draw (just center)
+    // get array of y-coordinates to draw
     public double[] getYCoords() {
-        double[] xs = getXCoords();
-        double[] coords = new double[51];
-        for (int i = 0; i < 51; i++) {
-            coords[i] = y - (1.0 / 25.0) * Math.sin(((xs[i] - (25.0 - i) / 25.0) / len));
-        }
+        double[] coords = new double[POINTS];
+        getCoords(new double[POINTS], coords);
         return coords;
     }
 
+    // get number of coordinates to draw
+    public int getNumCoords() {
+        return POINTS;
+    }
+
+    // copy coordinates to draw: point i is at x - u * len, and its phase is
+    // (x - u * len - u) / len, which grows by (1 + 1 / len) / 25 each point
+    public int getCoords(double[] xs, double[] ys) {
+        double phase = (x - UNIT_X[0] * len - UNIT_X[0]) / len;
+        double step = (1.0 + 1.0 / len) / 25.0;
+        double sin = Math.sin(phase);
+        double cos = Math.cos(phase);
+        double stepSin = Math.sin(step);
+        double stepCos = Math.cos(step);
+        for (int i = 0; i < POINTS; i++) {
+            xs[i] = x - UNIT_X[i] * len;
+            ys[i] = y - AMPLITUDE * sin;
+            // rotate (sin, cos) by step
+            double next = sin * stepCos + cos * stepSin;
+            cos = cos * stepCos - sin * stepSin;
+            sin = next;
+        }
+        return POINTS;
+    }
+
     // setters
     // set x coordinate - center
     public void setX(double newX) {
@@ -78,12 +113,21 @@ public class Squiggle implements Shape {
         len = newLen;
     }
 
-    // draw the shape
-    public void draw() {
-        double[] xs = getXCoords();
-        double[] ys = getYCoords();
+    // set center and length, as in the constructor
+    public void reset(double newX, double newY, double radius) {
+        this.x = newX;
+        this.y = newY;
+        this.len = radius;
+    }
+
+    // draw the shape with the renderer
+    public void draw(Renderer renderer) {
+        double[][] scratch = SCRATCH.get();
+        double[] xs = scratch[0];
+        double[] ys = scratch[1];
+        getCoords(xs, ys);
         for (int i = 0; i < 49; i++) {
-            StdDraw.line(xs[i], ys[i], xs[i + 1], ys[i + 1]);
+            renderer.line(xs[i], ys[i], xs[i + 1], ys[i + 1]);
         }
     }
 }
@@ -0,0 +1,92 @@
+/* *****************************************************************************
+ *  Compilation:  javac StdDrawRenderer.java
+ *
+ *  The StdDrawRenderer class implements the Renderer interface with StdDraw's
+ *  static methods, drawing frames in StdDraw's double buffered window exactly
+ *  as EyeTunes did before Renderers. StdDraw has only one window, so all
+ *  StdDrawRenderers draw to the same canvas. StdDraw draws on an offscreen
+ *  image that keeps the last frame, so a frame can only change a region of
+ *  it; StdDraw.show() still copies the whole image to the window.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import java.awt.Color;
+import java.util.Arrays;
+
+public final class StdDrawRenderer implements Renderer {
+    // instance variables
+    private final int width;  // canvas width in pixels
+    private final int height; // canvas height in pixels
+
+    // constructor, opens StdDraw's window with the given canvas size
+    public StdDrawRenderer(int width, int height) {
+        this.width = width;
+        this.height = height;
+        StdDraw.setCanvasSize(width, height);
+        StdDraw.enableDoubleBuffering();
+        // set default StdDraw color
+        StdDraw.clear(StdDraw.BLACK);
+        StdDraw.setPenColor(StdDraw.WHITE);
+    }
+
+    // getters
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    // drawing
+    public void clear(Color color) {
+        StdDraw.clear(color);
+    }
+
+    public boolean keepsFrame() {
+        return true;
+    }
+
+    public void clear(Color color, double x0, double y0, double x1, double y1) {
+        StdDraw.setPenColor(color);
+        StdDraw.filledRectangle((x0 + x1) / 2, (y0 + y1) / 2, (x1 - x0) / 2, (y1 - y0) / 2);
+    }
+
+    public void setPenColor(Color color) {
+        StdDraw.setPenColor(color);
+    }
+
+    public void filledPolygon(double[] xs, double[] ys, int n) {
+        // StdDraw draws every coordinate in the arrays
+        if (xs.length == n && ys.length == n)
+            StdDraw.filledPolygon(xs, ys);
+        else
+            StdDraw.filledPolygon(Arrays.copyOf(xs, n), Arrays.copyOf(ys, n));
+    }
+
+    public void filledCircle(double x, double y, double radius) {
+        StdDraw.filledCircle(x, y, radius);
+    }
+
+    public void line(double x0, double y0, double x1, double y1) {
+        StdDraw.line(x0, y0, x1, y1);
+    }
+
+    public void show() {
+        StdDraw.show();
+    }
+
+    // keys
+    public boolean hasNextKeyTyped() {
+        return StdDraw.hasNextKeyTyped();
+    }
+
+    public char nextKeyTyped() {
+        return StdDraw.nextKeyTyped();
+    }
+
+    // StdDraw's window closes with the program
+    public void close() { }
+}
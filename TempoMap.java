@@ -0,0 +1,151 @@
+/* *****************************************************************************
+ *  Compilation:  javac TempoMap.java
+ *
+ *  A TempoMap converts the ticks of a MIDI Sequence to microseconds, the way
+ *  the Sequencer does while playing it. In a PPQ (pulses per quarter note)
+ *  Sequence, the length of a tick depends on the tempo, which set tempo
+ *  MetaMessages (type 0x51, microseconds per quarter note) in any track may
+ *  change; the tempo is 120 beats per minute until the first one. The tempo
+ *  changes of all tracks are collected once, with the time in microseconds at
+ *  which each starts, so converting a tick (or a time back to its tick) is a
+ *  binary search. In an SMPTE Sequence, ticks have a fixed length and tempo
+ *  changes are ignored.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.Track;
+import java.util.Arrays;
+
+public final class TempoMap {
+    // constants
+    public static final int SET_TEMPO = 0x51; // MetaMessage set tempo event
+    private static final int DEFAULT_TEMPO = 500000; // microseconds per quarter note (120 bpm)
+
+    // instance variables
+    private final long[] ticks;   // tick at which each tempo starts (first is 0)
+    private final long[] micros;  // microseconds at which each tempo starts
+    private final int[] tempos;   // microseconds per quarter note
+    private final int size;       // number of tempos
+    private final int resolution; // ticks per quarter note (PPQ), or per SMPTE frame
+    private final double ticksPerSecond; // fixed tick rate of an SMPTE Sequence, 0 if PPQ
+
+    // constructor
+    public TempoMap(Sequence sequence) {
+        this(sequence.getDivisionType(), sequence.getResolution(), tempoChanges(sequence));
+    }
+
+    // constructor, with tempo changes packed as tick << 24 | tempo
+    private TempoMap(float divisionType, int resolution, long[] changes) {
+        this(divisionType, resolution, changes, changes.length);
+    }
+
+    /**
+     * Creates a TempoMap from the tempo changes of a MIDI file.
+     *
+     * @param divisionType timing division type (Sequence.PPQ or an SMPTE frame rate)
+     * @param resolution   ticks per quarter note (PPQ), or per SMPTE frame
+     * @param changes      tempo changes packed as tick << 24 | microseconds per quarter
+     *                     note, track by track in file order
+     * @param count        number of tempo changes
+     */
+    public TempoMap(float divisionType, int resolution, long[] changes, int count) {
+        this.resolution = resolution;
+        ticksPerSecond = (divisionType == Sequence.PPQ) ? 0 : divisionType * resolution;
+
+        // sort tempo changes as tick << 24 | number of the change,
+        // so that changes at the same tick stay in order
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = (changes[i] & ~0xFFFFFFL) | i;
+        }
+        Arrays.sort(keys);
+
+        ticks = new long[count + 1];
+        micros = new long[count + 1];
+        tempos = new int[count + 1];
+        tempos[0] = DEFAULT_TEMPO;
+        int n = 1;
+        for (int i = 0; i < count; i++) {
+            long tick = keys[i] >>> 24;
+            int tempo = (int) (changes[(int) (keys[i] & 0xFFFFFF)] & 0xFFFFFF);
+            if (tempo == 0) continue;
+            if (tick == ticks[n - 1]) {
+                // the last tempo change at a tick is the one that lasts
+                tempos[n - 1] = tempo;
+                continue;
+            }
+            ticks[n] = tick;
+            micros[n] = micros[n - 1] + (tick - ticks[n - 1]) * tempos[n - 1] / resolution;
+            tempos[n] = tempo;
+            n++;
+        }
+        size = n;
+    }
+
+    // collect tempo changes of all tracks, packed as tick << 24 | tempo
+    private static long[] tempoChanges(Sequence sequence) {
+        int count = 0;
+        long[] changes = new long[16];
+        for (Track track : sequence.getTracks()) {
+            for (int i = 0; i < track.size(); i++) {
+                MidiEvent event = track.get(i);
+                MidiMessage message = event.getMessage();
+                if (!(message instanceof MetaMessage)) continue;
+                MetaMessage meta = (MetaMessage) message;
+                byte[] data = meta.getData();
+                if (meta.getType() != SET_TEMPO || data.length < 3) continue;
+                if (count == changes.length) changes = Arrays.copyOf(changes, 2 * count);
+                changes[count++] = (event.getTick() << 24) | getTempo(data, 0);
+            }
+        }
+        return Arrays.copyOf(changes, count);
+    }
+
+    /**
+     * Static helper method. Reads the tempo of a set tempo MetaMessage.
+     *
+     * @param data   bytes of the MetaMessage
+     * @param offset index of the first of its 3 tempo bytes
+     * @return microseconds per quarter note
+     */
+    public static int getTempo(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 16) | ((data[offset + 1] & 0xFF) << 8) | (data[offset + 2] & 0xFF);
+    }
+
+    /**
+     * Converts a tick of the Sequence to the time at which it is played.
+     *
+     * @param tick tick of the Sequence
+     * @return time in microseconds from the start of the Sequence
+     */
+    public long toMicros(long tick) {
+        if (ticksPerSecond > 0) return (long) (tick * 1000000.0 / ticksPerSecond);
+        // last tempo that starts at or before the tick
+        int i = Arrays.binarySearch(ticks, 0, size, tick);
+        if (i < 0) i = -i - 2;
+        return micros[i] + (tick - ticks[i]) * tempos[i] / resolution;
+    }
+
+    /**
+     * Converts a time to the tick of the Sequence that is played at that time,
+     * the inverse of toMicros().
+     *
+     * @param time time in microseconds from the start of the Sequence
+     * @return tick of the Sequence
+     */
+    public long toTick(long time) {
+        if (ticksPerSecond > 0) return (long) (time * ticksPerSecond / 1000000.0);
+        // last tempo that starts at or before the time
+        int i = Arrays.binarySearch(micros, 0, size, time);
+        if (i < 0) i = -i - 2;
+        // first tempo starts at time 0
+        if (i < 0) return 0;
+        return ticks[i] + (time - micros[i]) * resolution / tempos[i];
+    }
+}
@@ -0,0 +1,55 @@
+/* *****************************************************************************
+ *  Compilation:  javac VirtualTransmitter.java
+ *
+ *  A VirtualTransmitter is an in-JVM stand-in for the Transmitter of a MIDI
+ *  keyboard controller: messages passed to send() go straight to its
+ *  Receiver, on the calling thread, with the given time stamp. It lets live
+ *  input (several controllers merged, channel offsets, ...) be driven without
+ *  hardware, for example by a benchmark, or by a test that plays messages from
+ *  threads of its own. Closing it stops messages from being sent.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+import javax.sound.midi.Transmitter;
+
+public final class VirtualTransmitter implements Transmitter {
+    // instance variables
+    private volatile Receiver receiver;     // receives the messages sent, null if none
+    private volatile boolean open = true;   // false once closed
+
+    // set the Receiver that messages are sent to
+    public void setReceiver(Receiver receiver) {
+        this.receiver = receiver;
+    }
+
+    // get the Receiver that messages are sent to
+    public Receiver getReceiver() {
+        return receiver;
+    }
+
+    // check if messages can still be sent
+    public boolean isOpen() {
+        return open;
+    }
+
+    // stop sending messages
+    public void close() {
+        open = false;
+    }
+
+    /**
+     * Sends a message to the Receiver, as a controller's Transmitter would.
+     * Does nothing once closed or without a Receiver.
+     *
+     * @param message   message to send
+     * @param timeStamp time stamp in microseconds, -1 if none
+     */
+    public void send(MidiMessage message, long timeStamp) {
+        Receiver r = receiver;
+        if (open && r != null) r.send(message, timeStamp);
+    }
+}
@@ -0,0 +1,82 @@
+/* *****************************************************************************
+ *  Compilation:  mvn -B package
+ *
+ *  Implements FrameWorkload. Each .mid file is read with an SmfReader, and the
+ *  notes playing at evenly spaced ticks are found with a NoteTimeline and
+ *  packed as a NoteTable would pack them.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import eyetunes.bench.FrameWorkload;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.sound.midi.InvalidMidiDataException;
+
+public final class FrameConstruction implements FrameWorkload {
+    // instance variables
+    private long[][] noteSets; // packed playing notes of each sample
+    private int next;          // next sample to draw
+    private MappingTable table;
+    private Renderer renderer;
+    private final DisplayList frameList = new DisplayList(NoteTable.SLOTS);
+
+    public void setup(String home, String rendererName, int samples) throws Exception {
+        table = MappingTable.load("jdbc:sqlite:" + new File(home, CreateDB.FILENAME).getPath());
+        if (rendererName.equals("null"))
+            renderer = new NullRenderer(CombineClasses.WIDTH, CombineClasses.HEIGHT);
+        else if (rendererName.equals("java2d"))
+            renderer = new Java2DRenderer(CombineClasses.WIDTH, CombineClasses.HEIGHT, true);
+        else
+            throw new IllegalArgumentException("Unknown renderer: " + rendererName);
+
+        File[] files = new File(home).listFiles((dir, name) -> name.toLowerCase().endsWith(".mid"));
+        if (files == null || files.length == 0) throw new IOException("No .mid files in " + home);
+        Arrays.sort(files);
+        List<long[]> sets = new ArrayList<long[]>();
+        for (File file : files) {
+            sample(file, samples, sets);
+        }
+        noteSets = sets.toArray(new long[0][]);
+    }
+
+    // add the notes playing at evenly spaced ticks of a file
+    private static void sample(File file, int samples, List<long[]> sets)
+        throws IOException, InvalidMidiDataException {
+        SmfReader reader = new SmfReader(file.getPath());
+        NoteTimeline timeline = new NoteTimeline(reader.getEvents());
+        TempoMap tempoMap = reader.getTempoMap();
+        int[] active = new int[NoteTable.SLOTS];
+        for (int s = 0; s < samples; s++) {
+            long tick = timeline.getTickLength() * s / samples;
+            int count = timeline.activeAt(tick, active);
+            long[] notes = new long[count];
+            for (int i = 0; i < count; i++) {
+                int note = active[i];
+                notes[i] = Note.pack(timeline.getProgram(note), timeline.getChannel(note),
+                                     timeline.getPitch(note), timeline.getVelocity(note),
+                                     tempoMap.toMicros(timeline.getStart(note)));
+            }
+            sets.add(notes);
+        }
+    }
+
+    public int frame() {
+        long[] notes = noteSets[next];
+        next = (next + 1) % noteSets.length;
+        CombineClasses.drawFrame(renderer, table, notes, notes.length, frameList);
+        return notes.length;
+    }
+
+    public int size() {
+        return noteSets.length;
+    }
+
+    public void close() {
+        if (renderer != null) renderer.close();
+    }
+}
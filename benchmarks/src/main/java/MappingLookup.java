@@ -0,0 +1,118 @@
+/* *****************************************************************************
+ *  Compilation:  mvn -B package
+ *
+ *  Implements MappingWorkload with a MappingTable, with one prepared JDBC
+ *  query per note on a connection opened once, which joins programvisuals,
+ *  shapes, quadrants, and colornotes for a percussion, program, and pitch, and
+ *  as graphics() looked up a note before the MappingTable: two connections
+ *  opened and closed per note, each running a query built as a string (on the
+ *  views that show the mappings as text, as the earlier schema stored them).
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import eyetunes.bench.MappingWorkload;
+import java.awt.Color;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.Random;
+
+public final class MappingLookup implements MappingWorkload {
+    // constants
+    private static final int KEYS = 1024; // number of (percussion, program, pitch) keys, power of two
+    private static final String QUERY =
+        "select s.name, q.name, c.r, c.g, c.b from programvisuals p"
+        + " join shapes s on s.id = p.shape_id"
+        + " join quadrants q on q.id = p.quadrant_id"
+        + " join colornotes c on c.color_id = p.color_id and c.note = ?"
+        + " where p.percussion = ? and p.program = ?";
+
+    // instance variables
+    private final boolean[] percussion = new boolean[KEYS];
+    private final int[] programs = new int[KEYS];
+    private final int[] pitches = new int[KEYS];
+    private int next; // next key
+    private String url; // JDBC URL of mappings.db
+    private MappingTable table;
+    private Connection connection;
+    private PreparedStatement statement;
+
+    public void open(String home) throws SQLException {
+        // mapped programs and pitches, about one in 10 percussion as in most songs
+        Random random = new Random(126);
+        for (int i = 0; i < KEYS; i++) {
+            percussion[i] = random.nextInt(10) == 0;
+            programs[i] = random.nextInt(128);
+            pitches[i] = 21 + random.nextInt(88);
+        }
+        url = "jdbc:sqlite:" + new File(home, CreateDB.FILENAME).getPath();
+        table = MappingTable.load(url);
+        Properties config = new Properties();
+        config.setProperty("open_mode", "1"); // read-only
+        connection = DriverManager.getConnection(url, config);
+        statement = connection.prepareStatement(QUERY);
+    }
+
+    public int cached() {
+        int i = next++ & (KEYS - 1);
+        ShapeType shape = table.getShape(percussion[i], programs[i]);
+        Quadrant quadrant = table.getQuadrant(percussion[i], programs[i]);
+        Color color = table.getColor(percussion[i], programs[i], pitches[i]);
+        return ((shape == null) ? -1 : shape.ordinal()) ^ quadrant.ordinal() ^ color.getRGB();
+    }
+
+    public int prepared() throws SQLException {
+        int i = next++ & (KEYS - 1);
+        statement.setInt(1, pitches[i]);
+        statement.setInt(2, percussion[i] ? 1 : 0);
+        statement.setInt(3, programs[i]);
+        try (ResultSet rs = statement.executeQuery()) {
+            if (!rs.next()) return -1;
+            ShapeType shape = ShapeType.fromText(rs.getString(1));
+            Quadrant quadrant = Quadrant.fromText(rs.getString(2));
+            Color color = new Color(rs.getInt(3), rs.getInt(4), rs.getInt(5));
+            return ((shape == null) ? -1 : shape.ordinal()) ^ quadrant.ordinal() ^ color.getRGB();
+        }
+    }
+
+    public int perNote() throws SQLException {
+        int i = next++ & (KEYS - 1);
+        String color = null, shape = null, quadrant = null;
+        try (Connection perNote = DriverManager.getConnection(url);
+             Statement statement = perNote.createStatement();
+             ResultSet rs = statement.executeQuery("select * from programvisualnames where percussion = "
+                                                   + percussion[i] + " and program = " + programs[i])) {
+            while (rs.next()) {
+                color = rs.getString("color");
+                shape = rs.getString("shape");
+                quadrant = rs.getString("quadrant");
+            }
+        }
+        if (color == null) return -1;
+        int r = 0, g = 0, b = 0;
+        try (Connection perNote = DriverManager.getConnection(url);
+             Statement statement = perNote.createStatement();
+             ResultSet rs = statement.executeQuery("select * from colornotenames where color = '" + color
+                                                   + "' and note = " + pitches[i])) {
+            while (rs.next()) {
+                r = rs.getInt("r");
+                g = rs.getInt("g");
+                b = rs.getInt("b");
+            }
+        }
+        ShapeType type = ShapeType.fromText(shape);
+        return ((type == null) ? -1 : type.ordinal()) ^ Quadrant.fromText(quadrant).ordinal()
+            ^ new Color(r, g, b).getRGB();
+    }
+
+    public void close() throws SQLException {
+        if (connection != null) connection.close();
+    }
+}
@@ -0,0 +1,59 @@
+/* *****************************************************************************
+ *  Compilation:  mvn -B package
+ *
+ *  Implements NoteWorkload with a CombineClasses that listens to one
+ *  VirtualTransmitter and draws with a NullRenderer: each MidiMessage is sent
+ *  through the keyboard controller's Receiver, and read by readMidiEvents() as
+ *  the thread that reads MIDI events reads it, up to the NoteTable. No frames
+ *  are drawn, since the graphics thread is not started.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import eyetunes.bench.NoteWorkload;
+import java.util.List;
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.ShortMessage;
+
+public final class NoteHandling implements NoteWorkload {
+    // instance variables
+    private final VirtualTransmitter keyboard = new VirtualTransmitter();
+    private CombineClasses source;
+    private ShortMessage[] noteOns, noteOffs;
+
+    public void setup(int voices) throws InvalidMidiDataException {
+        if (voices <= 0 || voices > NoteTable.SLOTS)
+            throw new IllegalArgumentException("Voices must be from 1 to " + NoteTable.SLOTS + ": " + voices);
+        noteOns = new ShortMessage[voices];
+        noteOffs = new ShortMessage[voices];
+        for (int v = 0; v < voices; v++) {
+            // spread voices over channels, then pitches from middle C
+            int channel = v % NoteTable.CHANNELS;
+            int pitch = (60 + v / NoteTable.CHANNELS) % NoteTable.PITCHES;
+            noteOns[v] = new ShortMessage(ShortMessage.NOTE_ON, channel, pitch, 64 + v % 64);
+            noteOffs[v] = new ShortMessage(ShortMessage.NOTE_OFF, channel, pitch, 0);
+        }
+        source = new CombineClasses(new NullRenderer(CombineClasses.WIDTH, CombineClasses.HEIGHT),
+                                    List.of(new MidiInput("Benchmark", keyboard)), false, false);
+    }
+
+    public int play() {
+        // no time stamps, as from most controllers
+        for (ShortMessage message : noteOns) keyboard.send(message, -1);
+        read();
+        int peak = source.getNotesPlaying();
+        for (ShortMessage message : noteOffs) keyboard.send(message, -1);
+        read();
+        return peak;
+    }
+
+    // read every queued event (readMidiEvents() waits if there is none)
+    private void read() {
+        while (!source.isEmpty()) source.readMidiEvents();
+    }
+
+    public void close() {
+        if (source != null) source.close();
+    }
+}
@@ -0,0 +1,84 @@
+/* *****************************************************************************
+ *  Compilation:  mvn -B package
+ *
+ *  A NullRenderer implements the Renderer interface by counting what would be
+ *  drawn, so that building a frame can be measured without rasterizing it.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import java.awt.Color;
+import java.util.NoSuchElementException;
+
+public final class NullRenderer implements Renderer {
+    // instance variables
+    private final int width;  // canvas width in pixels
+    private final int height; // canvas height in pixels
+    private int colors;       // number of pen colors set
+    private int shapes;       // number of shapes drawn
+    private int coords;       // number of coordinates drawn
+
+    // constructor
+    public NullRenderer(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    // getters
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    // get number of pen colors set, shapes drawn, and coordinates drawn
+    public int getColors() {
+        return colors;
+    }
+
+    public int getShapes() {
+        return shapes;
+    }
+
+    public int getCoords() {
+        return coords;
+    }
+
+    // drawing
+    public void clear(Color color) { }
+
+    public void setPenColor(Color color) {
+        colors++;
+    }
+
+    public void filledPolygon(double[] xs, double[] ys, int n) {
+        shapes++;
+        coords += n;
+    }
+
+    public void filledCircle(double x, double y, double radius) {
+        shapes++;
+        coords++;
+    }
+
+    public void line(double x0, double y0, double x1, double y1) {
+        shapes++;
+        coords += 2;
+    }
+
+    public void show() { }
+
+    // keys, there is no window
+    public boolean hasNextKeyTyped() {
+        return false;
+    }
+
+    public char nextKeyTyped() {
+        throw new NoSuchElementException("No key typed");
+    }
+
+    public void close() { }
+}
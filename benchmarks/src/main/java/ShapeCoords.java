@@ -0,0 +1,35 @@
+/* *****************************************************************************
+ *  Compilation:  mvn -B package
+ *
+ *  Implements ShapeWorkload for a Shape of each ShapeType.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+import eyetunes.bench.ShapeWorkload;
+
+public final class ShapeCoords implements ShapeWorkload {
+    // instance variables
+    private Shape shape;
+    private double[] xs, ys; // reused coordinates
+
+    public void setup(String shapeType) {
+        // a note of average velocity in the middle of the canvas
+        shape = ShapeType.valueOf(shapeType).create(0.5, 0.5, 64 / 128.0 * 2048 / (1360.0 * 4));
+        xs = new double[shape.getNumCoords()];
+        ys = new double[shape.getNumCoords()];
+    }
+
+    public double[] xCoords() {
+        return shape.getXCoords();
+    }
+
+    public double[] yCoords() {
+        return shape.getYCoords();
+    }
+
+    public int coords() {
+        return shape.getCoords(xs, ys);
+    }
+}
@@ -0,0 +1,61 @@
+/* *****************************************************************************
+ *  Compilation:  mvn -B package
+ *  Execution:    java -Djava.awt.headless=true -jar benchmarks/target/benchmarks.jar
+ *                FrameBenchmark -prof gc
+ *
+ *  Measures drawing a whole frame with CombineClasses.drawFrame() for sets of
+ *  playing notes sampled from the bundled .mid files, both building the frame
+ *  alone (null renderer) and rasterizing it offscreen with Java2D.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+package eyetunes.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class FrameBenchmark {
+    @Param({ "null", "java2d" })
+    private String renderer;
+
+    // note sets sampled from each .mid file
+    @Param({ "64" })
+    private int samples;
+
+    private FrameWorkload workload;
+
+    @Setup
+    public void setup() throws Exception {
+        workload = Workloads.create("FrameConstruction", FrameWorkload.class);
+        workload.setup(Workloads.home(), renderer, samples);
+    }
+
+    @TearDown
+    public void tearDown() {
+        workload.close();
+    }
+
+    @Benchmark
+    public int frame() {
+        return workload.frame();
+    }
+}
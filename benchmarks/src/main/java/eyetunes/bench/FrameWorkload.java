@@ -0,0 +1,34 @@
+/* *****************************************************************************
+ *  Compilation:  mvn -B package
+ *
+ *  A FrameWorkload draws whole frames with CombineClasses.drawFrame(), as the
+ *  graphics thread does, for sets of playing notes sampled from the bundled
+ *  .mid files: each frame draws the next sampled set.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+package eyetunes.bench;
+
+public interface FrameWorkload {
+    /**
+     * Samples the notes playing at evenly spaced ticks of every .mid file in
+     * home, and creates the renderer.
+     *
+     * @param home     directory with mappings.db and the .mid files
+     * @param renderer "null" (draw commands are counted, not rasterized) or
+     *                 "java2d" (an offscreen Java2DRenderer)
+     * @param samples  number of note sets sampled from each file
+     */
+    public void setup(String home, String renderer, int samples) throws Exception;
+
+    // draw the next sampled set of notes, returns its number of notes
+    public int frame();
+
+    // get number of sampled sets of notes
+    public int size();
+
+    // release the renderer
+    public void close();
+}
@@ -0,0 +1,65 @@
+/* *****************************************************************************
+ *  Compilation:  mvn -B package
+ *  Execution:    java -Djava.awt.headless=true -jar benchmarks/target/benchmarks.jar
+ *                MappingLookupBenchmark -prof gc
+ *
+ *  Measures looking up the shape, quadrant, and color of a note in the
+ *  in-memory MappingTable against querying the mappings database with JDBC:
+ *  the best case of one prepared query on an open connection, and the path
+ *  graphics() took before the MappingTable, which opened two connections and
+ *  ran two queries per note.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+package eyetunes.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class MappingLookupBenchmark {
+    private MappingWorkload workload;
+
+    @Setup
+    public void setup() throws Exception {
+        workload = Workloads.create("MappingLookup", MappingWorkload.class);
+        workload.open(Workloads.home());
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        workload.close();
+    }
+
+    @Benchmark
+    public int cache() {
+        return workload.cached();
+    }
+
+    @Benchmark
+    public int jdbcPrepared() throws Exception {
+        return workload.prepared();
+    }
+
+    @Benchmark
+    public int jdbcPerNote() throws Exception {
+        return workload.perNote();
+    }
+}
@@ -0,0 +1,33 @@
+/* *****************************************************************************
+ *  Compilation:  mvn -B package
+ *
+ *  A MappingWorkload looks up the shape, quadrant, and color of notes in the
+ *  in-memory MappingTable, with a prepared JDBC query of the mappings database
+ *  per note, or exactly as graphics() did before the MappingTable. Each lookup
+ *  takes the next of a fixed sequence of (percussion, program, pitch) keys.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+package eyetunes.bench;
+
+public interface MappingWorkload {
+    // load the MappingTable and open a read-only connection to mappings.db in home
+    public void open(String home) throws Exception;
+
+    // look up the next key in the MappingTable, returns a value derived from the mapping
+    public int cached();
+
+    // look up the next key with a prepared JDBC query on the open connection, returns a
+    // value derived from the mapping
+    public int prepared() throws Exception;
+
+    // look up the next key as graphics() did before the MappingTable (a new connection
+    // and a query built as a string, for the program and then for the color), returns a
+    // value derived from the mapping
+    public int perNote() throws Exception;
+
+    // close the connection
+    public void close() throws Exception;
+}
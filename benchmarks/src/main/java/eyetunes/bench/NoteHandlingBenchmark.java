@@ -0,0 +1,57 @@
+/* *****************************************************************************
+ *  Compilation:  mvn -B package
+ *  Execution:    java -Djava.awt.headless=true -jar benchmarks/target/benchmarks.jar
+ *                NoteHandlingBenchmark -prof gc
+ *
+ *  Measures handling a chord of NOTE_ONs and its NOTE_OFFs from a keyboard
+ *  controller's Receiver to the NoteTable, at 16, 64, and 256 voices of polyphony.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+package eyetunes.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class NoteHandlingBenchmark {
+    @Param({ "16", "64", "256" })
+    private int voices;
+
+    private NoteWorkload workload;
+
+    @Setup
+    public void setup() throws Exception {
+        workload = Workloads.create("NoteHandling", NoteWorkload.class);
+        workload.setup(voices);
+    }
+
+    // one chord: all NOTE_ONs, then all NOTE_OFFs
+    @Benchmark
+    public int noteOnOff() {
+        return workload.play();
+    }
+
+    @TearDown
+    public void tearDown() {
+        workload.close();
+    }
+}
@@ -0,0 +1,24 @@
+/* *****************************************************************************
+ *  Compilation:  mvn -B package
+ *
+ *  A NoteWorkload sends a chord of NOTE_ONs, then its NOTE_OFFs, through the
+ *  path a keyboard controller's MidiMessages take: its Receiver queues them,
+ *  and the thread that reads MIDI events drains them in a batch and routes
+ *  them to the handlers that update the NoteTable and request a frame.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+package eyetunes.bench;
+
+public interface NoteWorkload {
+    // build a chord of the given number of notes (distinct channels and pitches)
+    public void setup(int voices) throws Exception;
+
+    // send and read the chord's NOTE_ONs then NOTE_OFFs, returns the notes playing at the peak
+    public int play();
+
+    // stop listening
+    public void close();
+}
@@ -0,0 +1,62 @@
+/* *****************************************************************************
+ *  Compilation:  mvn -B package
+ *  Execution:    java -Djava.awt.headless=true -jar benchmarks/target/benchmarks.jar
+ *                ShapeCoordsBenchmark -prof gc
+ *
+ *  Measures calculating the coordinates of every ShapeType's Shape, as new
+ *  arrays with getXCoords() and getYCoords(), and into reused arrays with
+ *  getCoords(), as drawing does.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+package eyetunes.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class ShapeCoordsBenchmark {
+    @Param({ "SQUARE", "HORIZONTAL_RECTANGLE", "RIGHT_DIAGONAL_RECTANGLE", "LEFT_DIAGONAL_RECTANGLE",
+             "CIRCLE", "SQUIGGLE", "SAWTOOTH" })
+    private String shape;
+
+    private ShapeWorkload workload;
+
+    @Setup
+    public void setup() {
+        workload = Workloads.create("ShapeCoords", ShapeWorkload.class);
+        workload.setup(shape);
+    }
+
+    @Benchmark
+    public double[] xCoords() {
+        return workload.xCoords();
+    }
+
+    @Benchmark
+    public double[] yCoords() {
+        return workload.yCoords();
+    }
+
+    @Benchmark
+    public int reusedCoords() {
+        return workload.coords();
+    }
+}
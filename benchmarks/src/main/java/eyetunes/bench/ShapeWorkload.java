@@ -0,0 +1,23 @@
+/* *****************************************************************************
+ *  Compilation:  mvn -B package
+ *
+ *  A ShapeWorkload calculates the coordinates of one Shape, either as new
+ *  arrays (getXCoords() and getYCoords()) or into reused arrays (getCoords()).
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+package eyetunes.bench;
+
+public interface ShapeWorkload {
+    // create the Shape of the ShapeType with the given name
+    public void setup(String shapeType);
+
+    public double[] xCoords();
+
+    public double[] yCoords();
+
+    // calculate both coordinates into reused arrays, returns the number of coordinates
+    public int coords();
+}
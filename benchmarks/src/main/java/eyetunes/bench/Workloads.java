@@ -0,0 +1,44 @@
+/* *****************************************************************************
+ *  Compilation:  mvn -B package
+ *
+ *  EyeTunes is compiled in the default package, which classes in a package
+ *  (such as JMH benchmarks, which must have one) cannot refer to. So each
+ *  benchmark works through an interface of this package, implemented by a
+ *  class in the default package that calls EyeTunes directly. Workloads
+ *  creates that class by name once, in the benchmark's setup; its methods are
+ *  then plain interface calls, which the JIT inlines.
+ *
+ *  By Morgan Teman
+ *
+ **************************************************************************** */
+
+package eyetunes.bench;
+
+public final class Workloads {
+    // system property of the directory with mappings.db and the .mid files
+    public static final String HOME_PROPERTY = "eyetunes.home";
+
+    private Workloads() { }
+
+    /**
+     * Static helper method. Creates an instance of a class in the default
+     * package that implements the given workload interface.
+     *
+     * @param className name of the class in the default package
+     * @param type      workload interface
+     * @return new instance
+     */
+    public static <T> T create(String className, Class<T> type) {
+        try {
+            return type.cast(Class.forName(className).getDeclaredConstructor().newInstance());
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create workload " + className, e);
+        }
+    }
+
+    // get directory with mappings.db and the .mid files (the working directory by default)
+    public static String home() {
+        return System.getProperty(HOME_PROPERTY, ".");
+    }
+}